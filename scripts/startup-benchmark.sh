@@ -0,0 +1,92 @@
+#!/usr/bin/env bash
+#
+# Compares the startup time and peak memory (RSS) of the JVM and native builds of the
+# shell, for the interactive path (the full shell context, running ':help' and exiting)
+# and for the one-shot path (answering a single prompt).
+#
+# Usage: scripts/startup-benchmark.sh [-n runs] [-p prompt]
+#
+# Environment:
+#   JAR             the executable jar (default: target/chat-gpt-shell-*.jar)
+#   NATIVE          the native executable (default: target/chat-gpt-shell)
+#   AOT             set to 1 to also run the jar with its AOT artifacts, if it was
+#                   built with the 'aot' profile
+#   OPEN_AI_API_KEY required for the one-shot path, which sends a real request
+#
+set -euo pipefail
+
+runs=5
+prompt="Reply with the single word ok."
+
+while getopts "n:p:" option; do
+	case "${option}" in
+		n) runs="${OPTARG}" ;;
+		p) prompt="${OPTARG}" ;;
+		*) sed -n '3,14p' "$0"; exit 2 ;;
+	esac
+done
+
+if [[ ! -x /usr/bin/time ]]; then
+	echo "/usr/bin/time is required to measure the peak RSS." >&2
+	exit 1
+fi
+
+jar="${JAR:-$(ls target/chat-gpt-shell-*.jar 2>/dev/null | grep -v -e sources -e javadoc | head -n 1 || true)}"
+native="${NATIVE:-target/chat-gpt-shell}"
+result="$(mktemp)"
+trap 'rm -f "${result}"' EXIT
+
+# Runs a command once and prints its wall-clock time in milliseconds and its peak RSS in
+# kilobytes.
+measure_once() {
+	if [[ "$(uname)" == "Darwin" ]]; then
+		/usr/bin/time -l "$@" > /dev/null 2> "${result}" || true
+		awk '/ real / { ms = $1 * 1000 } /maximum resident set size/ { kb = $1 / 1024 }
+			END { printf "%d %d\n", ms, kb }' "${result}"
+	else
+		/usr/bin/time -f "%e %M" -o "${result}" "$@" > /dev/null 2>&1 || true
+		awk '{ printf "%d %d\n", $1 * 1000, $2 }' "${result}"
+	fi
+}
+
+# Runs a command the configured number of times and prints the median time and the
+# highest peak RSS.
+measure() {
+	local name="$1" path="$2"
+	shift 2
+	local times=() peak=0 ms kb
+	for ((run = 0; run < runs; run++)); do
+		read -r ms kb < <(measure_once "$@")
+		times+=("${ms}")
+		if ((kb > peak)); then
+			peak="${kb}"
+		fi
+	done
+	local median
+	median="$(printf '%s\n' "${times[@]}" | sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }')"
+	printf "%-10s %-12s %10s ms %10s MB\n" "${name}" "${path}" "${median}" "$((peak / 1024))"
+}
+
+# Measures both paths of one build.
+benchmark() {
+	local name="$1"
+	shift
+	measure "${name}" "interactive" "$@" ":help"
+	if [[ -n "${OPEN_AI_API_KEY:-}" ]]; then
+		measure "${name}" "one-shot" "$@" "${prompt}"
+	fi
+}
+
+printf "%-10s %-12s %13s %13s\n" "build" "path" "median time" "peak RSS"
+if [[ -n "${jar}" && -f "${jar}" ]]; then
+	benchmark "jvm" java -jar "${jar}"
+	if [[ "${AOT:-0}" == "1" ]]; then
+		benchmark "jvm-aot" java -Dspring.aot.enabled=true -jar "${jar}"
+	fi
+fi
+if [[ -x "${native}" ]]; then
+	benchmark "native" "${native}"
+fi
+if [[ -z "${OPEN_AI_API_KEY:-}" ]]; then
+	echo "OPEN_AI_API_KEY is not set, the one-shot path was skipped." >&2
+fi
@@ -0,0 +1,63 @@
+package com.shahabkondri.chatgpt.shell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates realistic streams of content deltas for the benchmarks. Like the deltas
+ * streamed by the ChatGPT API, most of them are a single word with its leading space,
+ * with paragraph breaks sent as separate {@code "\n\n"} deltas and the occasional code
+ * block. The streams are generated from a fixed seed, so every run sees the same input.
+ *
+ * @author Shahab Kondri
+ */
+public final class DeltaStreams {
+
+	private static final String[] WORDS = { "the", "shell", "sends", "a", "request", "to", "model", "and", "prints",
+			"streamed", "response", "conversation", "is", "stored", "in", "database", "with", "its", "messages", "of",
+			"each", "turn", "%", "100%", "Spring", "Reactor", "terminal", "token", "context", "window" };
+
+	private static final String[] CODE = { "```java\n", "public", " void", " chat", "(String", " prompt)", " {\n",
+			"\treturn", " null;", "\n}", "\n```" };
+
+	private DeltaStreams() {
+	}
+
+	/**
+	 * Generates a stream of the given number of deltas.
+	 * @param size The number of deltas.
+	 * @return The deltas, in the order they would be streamed.
+	 */
+	public static List<String> generate(int size) {
+		Random random = new Random(42);
+		List<String> deltas = new ArrayList<>(size);
+		deltas.add("\n\n");
+		while (deltas.size() < size) {
+			int kind = random.nextInt(100);
+			if (kind < 3) {
+				deltas.add("\n\n");
+			}
+			else if (kind < 4) {
+				for (int i = 0; i < CODE.length && deltas.size() < size; i++) {
+					deltas.add(CODE[i]);
+				}
+			}
+			else {
+				deltas.add(" " + WORDS[random.nextInt(WORDS.length)]);
+			}
+		}
+		return deltas;
+	}
+
+	/**
+	 * Generates a conversation text of about the given number of words, used as the
+	 * content of stored messages.
+	 * @param words The number of words.
+	 * @return The generated text.
+	 */
+	public static String text(int words) {
+		return String.join("", generate(words)).strip();
+	}
+
+}
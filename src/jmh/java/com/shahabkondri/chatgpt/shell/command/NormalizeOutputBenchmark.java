@@ -0,0 +1,82 @@
+package com.shahabkondri.chatgpt.shell.command;
+
+import com.shahabkondri.chatgpt.shell.DeltaStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks {@link ChatGptCommand#normalizeOutput(String, AtomicBoolean)} over a whole
+ * streamed response, against the regular expression it used to match deltas with.
+ *
+ * @author Shahab Kondri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizeOutputBenchmark {
+
+	private static final Pattern NEW_LINE_PATTERN = Pattern.compile("\n\n");
+
+	@Param({ "100", "1000", "10000" })
+	private int deltas;
+
+	private List<String> stream;
+
+	/**
+	 * Generates the delta stream.
+	 */
+	@Setup
+	public void setUp() {
+		stream = DeltaStreams.generate(deltas);
+	}
+
+	/**
+	 * Normalizes every delta of the stream, as the chat command does for a response.
+	 * @param blackhole The blackhole that consumes the normalized deltas.
+	 */
+	@Benchmark
+	public void normalizeStream(Blackhole blackhole) {
+		AtomicBoolean isFirstResultPrinted = new AtomicBoolean(false);
+		for (String delta : stream) {
+			blackhole.consume(ChatGptCommand.normalizeOutput(delta, isFirstResultPrinted));
+		}
+	}
+
+	/**
+	 * Normalizes every delta of the stream with the regular expression.
+	 * @param blackhole The blackhole that consumes the normalized deltas.
+	 */
+	@Benchmark
+	public void normalizeStreamWithPattern(Blackhole blackhole) {
+		AtomicBoolean isFirstResultPrinted = new AtomicBoolean(false);
+		for (String delta : stream) {
+			Matcher matcher = NEW_LINE_PATTERN.matcher(delta);
+			if (matcher.matches()) {
+				blackhole.consume(matcher.replaceAll(isFirstResultPrinted.getAndSet(true) ? "\n" : ""));
+			}
+			else {
+				blackhole.consume(delta);
+			}
+		}
+	}
+
+}
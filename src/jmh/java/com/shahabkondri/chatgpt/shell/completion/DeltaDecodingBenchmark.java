@@ -0,0 +1,135 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shahabkondri.chatgpt.shell.DeltaStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks decoding the content deltas of a whole streamed response, received as one
+ * network buffer per event like the mock server sends them: once the way the ChatGPT
+ * client does it, decoding the buffers into lines and every chunk into an object graph,
+ * and once with the {@link SseDeltaDecoder}. Run with the gc profiler, which the
+ * benchmarks profile enables, to compare the allocation per response.
+ *
+ * @author Shahab Kondri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeltaDecodingBenchmark {
+
+	private static final String DATA_FIELD = "data: ";
+
+	private static final String DONE = "[DONE]";
+
+	@Param({ "100", "1000", "10000" })
+	private int deltas;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private List<byte[]> buffers;
+
+	/**
+	 * Encodes the delta stream as the events of a streamed response.
+	 */
+	@Setup
+	public void setUp() {
+		buffers = new ArrayList<>();
+		buffers.add(event(chunk(null)));
+		for (String delta : DeltaStreams.generate(deltas)) {
+			buffers.add(event(chunk(delta)));
+		}
+		buffers.add(event(DONE));
+	}
+
+	/**
+	 * Decodes the response the way the ChatGPT client does.
+	 * @param blackhole The blackhole that consumes the deltas.
+	 * @throws IOException If a chunk cannot be read.
+	 */
+	@Benchmark
+	public void objectGraph(Blackhole blackhole) throws IOException {
+		for (byte[] buffer : buffers) {
+			for (String line : new String(buffer, StandardCharsets.UTF_8).split("\n")) {
+				if (!line.startsWith(DATA_FIELD)) {
+					continue;
+				}
+				String data = line.substring(DATA_FIELD.length());
+				if (DONE.equals(data)) {
+					continue;
+				}
+				Chunk chunk = objectMapper.readValue(data, Chunk.class);
+				if (chunk.choices().get(0).delta().content() != null) {
+					blackhole.consume(chunk.choices().get(0).delta().content());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes the response with the lean decoder.
+	 * @param blackhole The blackhole that consumes the deltas.
+	 */
+	@Benchmark
+	public void leanDecoder(Blackhole blackhole) {
+		SseDeltaDecoder decoder = new SseDeltaDecoder();
+		for (byte[] buffer : buffers) {
+			for (String delta : decoder.decode(buffer, 0, buffer.length)) {
+				blackhole.consume(delta);
+			}
+		}
+	}
+
+	private String chunk(String content) {
+		ObjectNode chunk = objectMapper.createObjectNode().put("id", "chatcmpl-benchmark")
+				.put("object", "chat.completion.chunk").put("created", 1679000000L).put("model", "gpt-4");
+		ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+		if (content == null) {
+			choice.putObject("delta").put("role", "assistant");
+		}
+		else {
+			choice.putObject("delta").put("content", content);
+		}
+		choice.putNull("finish_reason");
+		return chunk.toString();
+	}
+
+	private static byte[] event(String data) {
+		return (DATA_FIELD + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	record Chunk(String id, String object, long created, String model, List<Choice> choices) {
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	record Choice(int index, Delta delta, String finishReason) {
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	record Delta(String role, String content) {
+	}
+
+}
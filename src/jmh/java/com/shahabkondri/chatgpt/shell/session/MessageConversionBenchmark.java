@@ -0,0 +1,80 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.shell.DeltaStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion between {@link ChatGptRequest.Message} and
+ * {@link MessageEntity} instances for large conversation histories.
+ *
+ * @author Shahab Kondri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageConversionBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	private int messages;
+
+	private Conversation conversation;
+
+	private List<ChatGptRequest.Message> chatGptMessages;
+
+	private List<MessageEntity> messageEntities;
+
+	/**
+	 * Generates a conversation history that alternates between user and assistant
+	 * messages.
+	 */
+	@Setup
+	public void setUp() {
+		conversation = new Conversation();
+		chatGptMessages = new ArrayList<>(messages);
+		String userContent = DeltaStreams.text(20);
+		String assistantContent = DeltaStreams.text(200);
+		for (int i = 0; i < messages; i++) {
+			chatGptMessages.add((i % 2 == 0) ? new ChatGptRequest.Message(MessageRole.USER, userContent)
+					: new ChatGptRequest.Message(MessageRole.ASSISTANT, assistantContent));
+		}
+		messageEntities = MessageEntity.toMessageEntities(chatGptMessages, conversation);
+	}
+
+	/**
+	 * Converts the history to message entities.
+	 * @return The message entities.
+	 */
+	@Benchmark
+	public List<MessageEntity> toMessageEntities() {
+		return MessageEntity.toMessageEntities(chatGptMessages, conversation);
+	}
+
+	/**
+	 * Converts the message entities back to the history.
+	 * @return The ChatGPT messages.
+	 */
+	@Benchmark
+	public List<ChatGptRequest.Message> toChatGptMessages() {
+		return MessageEntity.toChatGptMessages(messageEntities);
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.shell.ChatGptShellApplication;
+import com.shahabkondri.chatgpt.shell.DeltaStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks saving and loading conversations through the {@link ConversationRepository}
+ * and {@link MessageRepository} against an in-memory H2 database. The application context
+ * is started without the interactive shell and without network access.
+ *
+ * @author Shahab Kondri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+	@Param({ "10", "100" })
+	private int messages;
+
+	private ConfigurableApplicationContext context;
+
+	private ConversationRepository conversationRepository;
+
+	private MessageRepository messageRepository;
+
+	private List<ChatGptRequest.Message> history;
+
+	private Long storedConversationId;
+
+	/**
+	 * Starts the application context and stores the conversation that is loaded by the
+	 * load benchmark.
+	 */
+	@Setup
+	public void setUp() {
+		context = new SpringApplicationBuilder(ChatGptShellApplication.class).bannerMode(Banner.Mode.OFF)
+				.properties("spring.main.web-application-type=none", "spring.shell.interactive.enabled=false",
+						"spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+						"spring.jpa.hibernate.ddl-auto=create-drop", "openai.api-key=benchmark")
+				.run();
+		conversationRepository = context.getBean(ConversationRepository.class);
+		messageRepository = context.getBean(MessageRepository.class);
+
+		history = new ArrayList<>(messages);
+		String userContent = DeltaStreams.text(20);
+		String assistantContent = DeltaStreams.text(200);
+		for (int i = 0; i < messages; i++) {
+			history.add((i % 2 == 0) ? new ChatGptRequest.Message(MessageRole.USER, userContent)
+					: new ChatGptRequest.Message(MessageRole.ASSISTANT, assistantContent));
+		}
+		storedConversationId = saveConversation().getId();
+	}
+
+	/**
+	 * Closes the application context.
+	 */
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	/**
+	 * Saves a new conversation together with its messages.
+	 * @return The saved conversation.
+	 */
+	@Benchmark
+	public Conversation saveConversation() {
+		Conversation conversation = new Conversation();
+		conversation.setTitle("Benchmark");
+		conversation.setMessages(MessageEntity.toMessageEntities(history, conversation));
+		return conversationRepository.save(conversation);
+	}
+
+	/**
+	 * Saves the messages of a turn one by one, each in its own transaction.
+	 * @return The last saved message.
+	 */
+	@Benchmark
+	public MessageEntity saveMessagesOneByOne() {
+		Conversation conversation = conversationRepository.getReferenceById(storedConversationId);
+		MessageEntity last = null;
+		for (MessageEntity messageEntity : MessageEntity.toMessageEntities(history, conversation)) {
+			last = messageRepository.save(messageEntity);
+		}
+		return last;
+	}
+
+	/**
+	 * Saves the messages of a turn as one batch, in a single transaction.
+	 * @return The saved messages.
+	 */
+	@Benchmark
+	public List<MessageEntity> saveMessagesBatched() {
+		Conversation conversation = conversationRepository.getReferenceById(storedConversationId);
+		return messageRepository.saveAll(MessageEntity.toMessageEntities(history, conversation));
+	}
+
+	/**
+	 * Loads a stored conversation together with its messages.
+	 * @return The loaded conversation.
+	 */
+	@Benchmark
+	public Conversation loadConversation() {
+		return conversationRepository.findWithMessagesById(storedConversationId).orElseThrow();
+	}
+
+	/**
+	 * Loads the most recent window of messages of a stored conversation, as done when a
+	 * conversation is loaded into the shell.
+	 * @return The messages of the window.
+	 */
+	@Benchmark
+	public List<MessageEntity> loadRecentWindow() {
+		return messageRepository.findByConversationIdAndIdLessThanOrderByIdDesc(storedConversationId, Long.MAX_VALUE,
+				PageRequest.of(0, 20));
+	}
+
+}
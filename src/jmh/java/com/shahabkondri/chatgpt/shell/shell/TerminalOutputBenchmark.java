@@ -0,0 +1,107 @@
+package com.shahabkondri.chatgpt.shell.shell;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahabkondri.chatgpt.shell.DeltaStreams;
+import com.shahabkondri.chatgpt.shell.configuration.MetricsProperties;
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the throughput of writing a streamed response to a dumb JLine
+ * {@link Terminal} that discards its output, through the {@link TerminalPrinter} (one
+ * flush per delta) and through the {@link StreamRenderer} (flushes coalesced per frame).
+ *
+ * @author Shahab Kondri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminalOutputBenchmark {
+
+	@Param({ "1000" })
+	private int deltas;
+
+	private List<String> stream;
+
+	private Terminal terminal;
+
+	private ScheduledExecutorService shellScheduler;
+
+	private TerminalPrinter terminalPrinter;
+
+	private StreamRenderer streamRenderer;
+
+	/**
+	 * Creates the terminal and the components writing to it.
+	 * @throws IOException If the terminal cannot be created.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		stream = DeltaStreams.generate(deltas);
+		terminal = new DumbTerminal(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+		shellScheduler = Executors.newSingleThreadScheduledExecutor();
+		terminalPrinter = new TerminalPrinter(terminal);
+		ChatMetrics chatMetrics = new ChatMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT),
+				new MetricsProperties(MetricsProperties.Dump.NONE, null), new ObjectMapper());
+		streamRenderer = new StreamRenderer(terminal, shellScheduler, chatMetrics);
+	}
+
+	/**
+	 * Closes the terminal and stops the scheduler.
+	 * @throws IOException If the terminal cannot be closed.
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		shellScheduler.shutdownNow();
+		terminal.close();
+	}
+
+	/**
+	 * Prints every delta of a response with the {@link TerminalPrinter}.
+	 */
+	@Benchmark
+	public void terminalPrinter() {
+		for (String delta : stream) {
+			terminalPrinter.print(delta);
+		}
+		terminalPrinter.newLine();
+	}
+
+	/**
+	 * Writes every delta of a response with the {@link StreamRenderer}.
+	 */
+	@Benchmark
+	public void streamRenderer() {
+		for (String delta : stream) {
+			streamRenderer.write(delta);
+		}
+		streamRenderer.flush();
+	}
+
+}
@@ -1,34 +1,45 @@
 package com.shahabkondri.chatgpt.shell;
 
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptShellRuntimeHints;
+import com.shahabkondri.chatgpt.shell.oneshot.OneShotApplication;
 import org.springframework.boot.Banner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 import java.util.Map;
 
 /**
  * The main entry point of the ChatGPT Shell application. This class configures and starts
- * the Spring Boot application, disabling the banner, setting a random server port, and
- * scanning for configuration properties from the specified property source.
+ * the Spring Boot application, disabling the banner and the web server, and scanning for
+ * configuration properties from the specified property source.
  *
  * @author Shahab Kondri
  */
 @SpringBootApplication
 @ConfigurationPropertiesScan
+@ImportRuntimeHints(ChatGptShellRuntimeHints.class)
 public class ChatGptShellApplication {
 
 	/**
 	 * The main method that starts the ChatGPT Shell application, configuring and
-	 * launching the Spring Boot application with the specified command line arguments.
+	 * launching the Spring Boot application with the specified command line arguments. If
+	 * the arguments contain a prompt rather than a command, the prompt is answered by the
+	 * lighter {@link OneShotApplication} instead and the process exits.
 	 * @param args The command line arguments passed to the application.
 	 */
 	public static void main(String[] args) {
+		if (OneShotApplication.isOneShot(args)) {
+			System.exit(OneShotApplication.run(args));
+		}
+
 		SpringApplication app = new SpringApplication(ChatGptShellApplication.class);
 		app.setBannerMode(Banner.Mode.OFF);
-		app.setDefaultProperties(Map.of("server.port", "0", "spring.shell.command.stacktrace.enabled", "false",
-				"spring.shell.command.history.enabled", "false", "spring.shell.command.script.enabled", "false"));
+		app.setDefaultProperties(Map.of("spring.main.web-application-type", "none",
+				"spring.shell.command.stacktrace.enabled", "false", "spring.shell.command.history.enabled", "false",
+				"spring.shell.command.script.enabled", "false"));
 		ConfigurableApplicationContext context = app.run(args);
 		SpringApplication.exit(context);
 	}
@@ -0,0 +1,239 @@
+package com.shahabkondri.chatgpt.shell.command;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.completion.CompletionService;
+import com.shahabkondri.chatgpt.shell.completion.ModelNames;
+import com.shahabkondri.chatgpt.shell.completion.ModelSelector;
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ShellComponent} that runs many prompts without user interaction. Prompts are
+ * read from a file or from the standard input, either one plain-text prompt per line or
+ * one JSON object per line, and are sent to the ChatGPT API concurrently. Each prompt is
+ * sent on its own, with the configured system message, and is not stored as a
+ * conversation. The replies are printed as JSON lines in the order of the prompts. When
+ * several models are given, every prompt is sent to each of them, and the result lines
+ * name the model and its latency.
+ *
+ * @author Shahab Kondri
+ */
+@ShellComponent
+@RegisterReflectionForBinding({ BatchCommand.BatchPrompt.class, BatchCommand.BatchResult.class })
+public class BatchCommand {
+
+	private static final String STANDARD_INPUT = "-";
+
+	private final CompletionService completionService;
+
+	private final ChatGptProperties chatGptProperties;
+
+	private final ModelSelector modelSelector;
+
+	private final TerminalPrinter terminalPrinter;
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * Constructs a new BatchCommand.
+	 * @param completionService The service for sending requests to the ChatGPT API.
+	 * @param chatGptProperties The properties for the ChatGPT API.
+	 * @param modelSelector The selector of the active model, which prompts are sent to
+	 * unless other models are given.
+	 * @param terminalPrinter The terminal printer for printing the results.
+	 * @param objectMapper The object mapper for reading prompts and writing results.
+	 */
+	public BatchCommand(CompletionService completionService, ChatGptProperties chatGptProperties,
+			ModelSelector modelSelector, TerminalPrinter terminalPrinter, ObjectMapper objectMapper) {
+		this.completionService = completionService;
+		this.chatGptProperties = chatGptProperties;
+		this.modelSelector = modelSelector;
+		this.terminalPrinter = terminalPrinter;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Runs the prompts of the given file, or of the standard input, with at most the
+	 * given number of requests in flight. A line is either a plain-text prompt or a JSON
+	 * object with a {@code prompt} and optional {@code id} and {@code system} fields.
+	 * Blank lines are skipped. For every prompt, a JSON line with its index, ID, prompt
+	 * and reply, or the error that occurred, is printed. For example, from a script:
+	 * <pre>
+	 * java -jar chat-gpt-shell.jar :batch --file prompts.jsonl &gt; replies.jsonl
+	 * </pre>
+	 * @param file The file to read the prompts from, or {@code -} for the standard input.
+	 * @param concurrency The maximum number of prompts run at the same time.
+	 * @param models The comma-separated names of the models to send every prompt to,
+	 * concurrently, or the active model if omitted.
+	 */
+	@ShellMethod(key = "batch", value = "Runs prompts from a file or the standard input concurrently.")
+	public void batch(@ShellOption(defaultValue = STANDARD_INPUT) String file,
+			@ShellOption(defaultValue = "4") int concurrency,
+			@ShellOption(defaultValue = ShellOption.NULL) String models) {
+		if (concurrency < 1) {
+			terminalPrinter.println("Concurrency must be greater than zero.");
+			return;
+		}
+		List<TextCompletionModel> targets;
+		try {
+			targets = (models != null) ? ModelNames.parseList(models) : null;
+		}
+		catch (IllegalArgumentException ex) {
+			terminalPrinter.println(ex.getMessage());
+			return;
+		}
+
+		Flux.using(() -> openPrompts(file), reader -> Flux.fromStream(reader.lines()), this::close)
+				.filter(StringUtils::hasText).index()
+				.flatMapSequential(line -> run(line.getT1(), line.getT2(), targets), concurrency)
+				.doOnNext(result -> terminalPrinter.println(toJson(result))).onErrorResume(ex -> {
+					terminalPrinter.println("Could not read prompts: " + errorMessage(ex));
+					return Mono.empty();
+				}).blockLast();
+	}
+
+	/**
+	 * Sends a single prompt, to each of the given models, and maps the replies, or the
+	 * errors that occurred, to {@link BatchResult BatchResults}.
+	 * @param index The index of the prompt, starting at 0.
+	 * @param line The line the prompt was read from.
+	 * @param models The models to send the prompt to, or {@code null} for the active
+	 * model.
+	 * @return A {@link Flux} of the results, in the order of the models, which never
+	 * completes with an error.
+	 */
+	private Flux<BatchResult> run(long index, String line, List<TextCompletionModel> models) {
+		return Mono.fromCallable(() -> parse(line)).flatMapMany(prompt -> {
+			if (models == null) {
+				return run(index, prompt, modelSelector.getActiveModel(), true, false);
+			}
+			return Flux.fromIterable(models).flatMapSequential(model -> run(index, prompt, model, false, true));
+		}).onErrorResume(ex -> Mono.just(new BatchResult(index, null, line, null, null, null, errorMessage(ex))));
+	}
+
+	/**
+	 * Sends a single prompt to a model and maps its reply, or the error that occurred, to
+	 * a {@link BatchResult}.
+	 * @param index The index of the prompt, starting at 0.
+	 * @param prompt The prompt to send.
+	 * @param model The model to send the prompt to.
+	 * @param fallback Whether the prompt may be sent to the fallback model.
+	 * @param compared Whether the result names the model and its latency.
+	 * @return A {@link Mono} of the result, which never completes with an error.
+	 */
+	private Mono<BatchResult> run(long index, BatchPrompt prompt, TextCompletionModel model, boolean fallback,
+			boolean compared) {
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return completionService.stream(toRequest(prompt, model), fallback).collect(Collectors.joining())
+					.map(reply -> new BatchResult(index, prompt.id(), prompt.prompt(), compared ? model : null,
+							compared ? elapsedMillis(start) : null, reply, null))
+					.onErrorResume(ex -> Mono.just(new BatchResult(index, prompt.id(), prompt.prompt(),
+							compared ? model : null, compared ? elapsedMillis(start) : null, null, errorMessage(ex))));
+		});
+	}
+
+	private static Long elapsedMillis(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	private BatchPrompt parse(String line) throws JsonProcessingException {
+		if (!line.stripLeading().startsWith("{")) {
+			return new BatchPrompt(null, line, null);
+		}
+		BatchPrompt prompt = objectMapper.readValue(line, BatchPrompt.class);
+		if (!StringUtils.hasText(prompt.prompt())) {
+			throw new IllegalArgumentException("Missing prompt");
+		}
+		return prompt;
+	}
+
+	private ChatGptRequest toRequest(BatchPrompt prompt, TextCompletionModel model) {
+		List<ChatGptRequest.Message> messages = new ArrayList<>(2);
+		String systemMessage = StringUtils.hasText(prompt.system()) ? prompt.system()
+				: chatGptProperties.systemMessage();
+		if (StringUtils.hasLength(systemMessage)) {
+			messages.add(new ChatGptRequest.Message(MessageRole.SYSTEM, systemMessage));
+		}
+		messages.add(new ChatGptRequest.Message(MessageRole.USER, prompt.prompt()));
+		return new ChatGptRequest(model, messages);
+	}
+
+	private BufferedReader openPrompts(String file) throws IOException {
+		if (STANDARD_INPUT.equals(file)) {
+			return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		}
+		return Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8);
+	}
+
+	private void close(BufferedReader reader) {
+		try {
+			reader.close();
+		}
+		catch (IOException ex) {
+			// Nothing left to read, the prompts have been run
+		}
+	}
+
+	private String toJson(BatchResult result) {
+		try {
+			return objectMapper.writeValueAsString(result);
+		}
+		catch (JsonProcessingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String errorMessage(Throwable throwable) {
+		return (throwable.getMessage() != null) ? throwable.getMessage() : throwable.getClass().getSimpleName();
+	}
+
+	/**
+	 * A prompt read from a batch input line.
+	 * @param id An optional identifier that is copied to the result.
+	 * @param prompt The user message to send.
+	 * @param system An optional system message that replaces the configured one.
+	 */
+	record BatchPrompt(String id, String prompt, String system) {
+	}
+
+	/**
+	 * The result of a batch prompt, printed as a JSON line.
+	 * @param index The index of the prompt in the input, starting at 0.
+	 * @param id The identifier of the prompt, if it had one.
+	 * @param prompt The user message that was sent.
+	 * @param model The model the prompt was sent to, if several models were given.
+	 * @param latencyMillis The time until the whole reply was received, in milliseconds,
+	 * if several models were given.
+	 * @param reply The AI-generated reply, or {@code null} if an error occurred.
+	 * @param error The error that occurred, or {@code null} if the prompt succeeded.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	record BatchResult(long index, String id, String prompt, TextCompletionModel model, Long latencyMillis,
+			String reply, String error) {
+	}
+
+}
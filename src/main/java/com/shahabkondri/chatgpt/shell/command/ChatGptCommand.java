@@ -1,74 +1,133 @@
 package com.shahabkondri.chatgpt.shell.command;
 
-import com.shahabkondri.chatgpt.api.client.ChatGptClient;
 import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
 import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.completion.CircuitBreakerOpenException;
+import com.shahabkondri.chatgpt.shell.completion.CompletionService;
+import com.shahabkondri.chatgpt.shell.completion.ModelNames;
+import com.shahabkondri.chatgpt.shell.completion.ModelSelector;
+import com.shahabkondri.chatgpt.shell.completion.WarmPath;
 import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import com.shahabkondri.chatgpt.shell.session.ContextWindow;
+import com.shahabkondri.chatgpt.shell.session.TokenCounter;
 import com.shahabkondri.chatgpt.shell.shell.Spinner;
+import com.shahabkondri.chatgpt.shell.shell.StreamRenderer;
 import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import org.jline.terminal.Terminal;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
 
-import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A {@link ShellComponent} that facilitates interaction with the OpenAI GPT-3 model
  * through the terminal. This component provides commands for sending user messages to the
  * API, processing AI-generated responses as a stream, and managing conversation history.
  * It simplifies the process of obtaining and displaying AI-generated responses in
- * real-time. This class uses a {@link ChatGptClient} to communicate with the OpenAI API,
- * a {@link TerminalPrinter} to display output in the terminal, and a
- * {@link ChatGptProperties} to manage ChatGPT configuration. A {@link Spinner} is used to
- * indicate loading states.
+ * real-time. This class uses a {@link CompletionService} to communicate with the OpenAI
+ * API, a {@link TerminalPrinter} and a {@link StreamRenderer} to display output in the
+ * terminal, and a {@link ChatGptProperties} to manage ChatGPT configuration. Each prompt
+ * is sent to the model chosen by the {@link ModelSelector}, which is told how the model
+ * performed. A {@link Spinner} is used to indicate loading states.
  *
  * @author Shahab Kondri
  */
 @ShellComponent
 public class ChatGptCommand {
 
-	private final ChatGptClient chatGptClient;
+	private final CompletionService completionService;
 
 	private final ConversationCommand conversationCommand;
 
 	private final TerminalPrinter terminalPrinter;
 
+	private final StreamRenderer streamRenderer;
+
 	private final ChatGptProperties chatGptProperties;
 
 	private final Spinner spinner;
 
-	private static final Pattern NEW_LINE_PATTERN = Pattern.compile("\n\n");
+	private final ContextWindow contextWindow;
+
+	private final Scheduler blockingScheduler;
+
+	private final TokenCounter tokenCounter;
+
+	private final ChatMetrics chatMetrics;
+
+	private final Terminal terminal;
+
+	private final WarmPath warmPath;
 
-	private static final Duration CHAT_TIMEOUT = Duration.ofSeconds(30);
+	private final ModelSelector modelSelector;
+
+	private final AtomicBoolean modelSuggested = new AtomicBoolean(false);
+
+	private static final String PARAGRAPH_BREAK = "\n\n";
 
 	/**
 	 * Constructs a new ChatGptCommand.
-	 * @param chatGptClient The ChatGPT client for interacting with the API.
+	 * @param completionService The service for sending requests to the ChatGPT API.
 	 * @param conversationCommand The ConversationCommand object used for managing
 	 * conversations.
 	 * @param terminalPrinter The terminal printer for printing messages.
+	 * @param streamRenderer The renderer for the streamed response.
 	 * @param chatGptProperties The properties for the ChatGPT API.
 	 * @param spinner The spinner for showing loading state.
+	 * @param contextWindow The context window that limits the history sent with each
+	 * request.
+	 * @param blockingScheduler The scheduler that renders the response and persists the
+	 * turn, off the Reactor event loops.
+	 * @param tokenCounter The token counter for measuring the token rate of the response.
+	 * @param chatMetrics The metrics of the chat pipeline.
+	 * @param terminal The terminal whose interrupt signal cancels the streamed response.
+	 * @param warmPath The warm path that prepares the next request between turns.
+	 * @param modelSelector The selector of the model each prompt is sent to.
 	 */
-	public ChatGptCommand(ChatGptClient chatGptClient, ConversationCommand conversationCommand,
-			TerminalPrinter terminalPrinter, ChatGptProperties chatGptProperties, Spinner spinner) {
-		this.chatGptClient = chatGptClient;
+	public ChatGptCommand(CompletionService completionService, ConversationCommand conversationCommand,
+			TerminalPrinter terminalPrinter, StreamRenderer streamRenderer, ChatGptProperties chatGptProperties,
+			Spinner spinner, ContextWindow contextWindow, Scheduler blockingScheduler, TokenCounter tokenCounter,
+			ChatMetrics chatMetrics, Terminal terminal, WarmPath warmPath, ModelSelector modelSelector) {
+		this.completionService = completionService;
 		this.conversationCommand = conversationCommand;
 		this.terminalPrinter = terminalPrinter;
+		this.streamRenderer = streamRenderer;
 		this.chatGptProperties = chatGptProperties;
 		this.spinner = spinner;
+		this.contextWindow = contextWindow;
+		this.blockingScheduler = blockingScheduler;
+		this.tokenCounter = tokenCounter;
+		this.chatMetrics = chatMetrics;
+		this.terminal = terminal;
+		this.warmPath = warmPath;
+		this.modelSelector = modelSelector;
 	}
 
 	/**
 	 * Interacts with the ChatGPT API by sending a user message and processing the
-	 * AI-generated response as a stream.
+	 * AI-generated response as a stream. Pressing Ctrl-C while the response is streamed
+	 * cancels the request: the part of the response received so far is kept and stored as
+	 * truncated, and the prompt returns right away. If no part of the response was
+	 * received, the turn is dropped. The request fails if no delta is received for the
+	 * configured idle timeout. If the request is answered by the fallback model, the
+	 * answer is stored with and credited to that model. The first time a short prompt
+	 * would have been answered sooner by the fast model, switching to it is suggested.
 	 * <p>
 	 * example: <pre>
 	 * :> Hello ChatGPT, can you help me with my question?
@@ -78,38 +137,197 @@ public class ChatGptCommand {
 	@ShellMethod(key = { "chat" }, value = "Interacts with the ChatGPT API by sending a"
 			+ " user message and processing the AI-generated response as a stream")
 	public void chat(@ShellOption(arity = Integer.MAX_VALUE) String... prompt) {
+		runTurn(String.join(" ", prompt));
+	}
+
+	/**
+	 * Runs a chat turn, as described in {@link #chat(String...)}, and measures it. This
+	 * is the path the load test drives, so that it measures what the user gets.
+	 * @param message The user message to send.
+	 * @return The measurements of the turn.
+	 */
+	Turn runTurn(String message) {
 		spinner.startSpinner();
-		String message = String.join(" ", prompt);
+		warmPath.markActive();
 		conversationCommand.addMessage(message, MessageRole.USER);
-		ChatGptRequest request = new ChatGptRequest(chatGptProperties.model(), conversationCommand.getMessages());
+		TextCompletionModel model = modelSelector.select(message);
+		Optional<TextCompletionModel> suggestion = modelSelector.suggest(message);
+		ChatGptRequest request = new ChatGptRequest(model,
+				contextWindow.fit(model, conversationCommand.getMessages()));
 
 		AtomicBoolean isFirstResultPrinted = new AtomicBoolean(false);
+		// Guards the rendered deltas against the cancellation, which is handled on another thread
+		Object renderLock = new Object();
 		StringBuilder builder = new StringBuilder();
 		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		AtomicLong firstTokenAt = new AtomicLong();
+		AtomicBoolean cancelled = new AtomicBoolean(false);
+		AtomicInteger answerTokens = new AtomicInteger();
+		AtomicReference<String> error = new AtomicReference<>();
+		AtomicLong renderedAt = new AtomicLong();
+		AtomicLong persistNanos = new AtomicLong();
+		// Switched to the fallback model if the request is sent to it
+		AtomicReference<TextCompletionModel> answeringModel = new AtomicReference<>(model);
+		Disposable.Swap subscription = Disposables.swap();
 
-		chatGptClient.completions(request).filter(response -> response.choices().get(0).delta().content() != null)
-				.doOnNext(__ -> spinner.stopSpinner())
-				.map(response -> normalizeOutput(response.choices().get(0).delta().content(), isFirstResultPrinted))
-				.doOnNext(builder::append).publishOn(Schedulers.parallel()).timeout(CHAT_TIMEOUT).doFinally(signal -> {
-					if (conversationCommand.getConversationStored().compareAndSet(false, true)) {
-						conversationCommand.generateConversationTitle(message);
-					}
-					terminalPrinter.newLine();
-					conversationCommand.addMessage(builder.toString(), MessageRole.ASSISTANT);
-					conversationCommand.updateCurrentConversation(message, MessageRole.USER);
-					conversationCommand.updateCurrentConversation(builder.toString(), MessageRole.ASSISTANT);
-					latch.countDown();
-				}).onErrorResume(throwable -> {
-					spinner.stopSpinner();
-					handleApiException(throwable);
-					return Mono.empty();
-				}).subscribe(terminalPrinter::print);
+		Terminal.SignalHandler previousHandler = terminal.handle(Terminal.Signal.INT, signal -> {
+			if (cancelled.compareAndSet(false, true)) {
+				subscription.dispose();
+			}
+		});
 		try {
+			subscription.update(completionService.stream(request, true, answeringModel::set).doOnNext(__ -> {
+				if (firstTokenAt.compareAndSet(0, System.nanoTime())) {
+					chatMetrics.recordFirstToken(firstTokenAt.get() - start);
+				}
+				spinner.stopSpinner();
+			}).map(content -> normalizeOutput(content, isFirstResultPrinted))
+					.timeout(chatGptProperties.idleTimeout()).publishOn(blockingScheduler).doOnComplete(() -> {
+						if (firstTokenAt.get() != 0) {
+							long streamNanos = System.nanoTime() - firstTokenAt.get();
+							int tokens = tokenCounter.count(builder.toString());
+							answerTokens.set(tokens);
+							chatMetrics.recordStream(streamNanos, tokens);
+							modelSelector.recordSuccess(answeringModel.get(), firstTokenAt.get() - start, streamNanos,
+									tokens);
+							if (answeringModel.get() != model) {
+								modelSelector.recordFailure(model);
+							}
+						}
+					}).doFinally(signal -> {
+						if (signal != SignalType.CANCEL) {
+							endTurn(message, builder, signal, answeringModel.get(), renderedAt, persistNanos, latch);
+							return;
+						}
+						// Cancelled on the signal thread: the turn ends on the blocking scheduler, after the
+						// delta being rendered, if any, and no delta is rendered after it
+						blockingScheduler.schedule(() -> {
+							synchronized (renderLock) {
+								spinner.stopSpinner();
+								chatMetrics.recordCancellation();
+								error.set("cancelled");
+								endTurn(message, builder, signal, answeringModel.get(), renderedAt, persistNanos,
+										latch);
+							}
+						});
+					}).onErrorResume(throwable -> {
+						spinner.stopSpinner();
+						chatMetrics.recordError(throwable);
+						error.set(ChatMetrics.errorType(throwable));
+						modelSelector.recordFailure(answeringModel.get());
+						if (answeringModel.get() != model) {
+							modelSelector.recordFailure(model);
+						}
+						handleApiException(throwable);
+						return Mono.empty();
+					}).subscribe(content -> {
+						synchronized (renderLock) {
+							if (!cancelled.get()) {
+								builder.append(content);
+								streamRenderer.write(content);
+							}
+						}
+					}));
 			latch.await();
+			if (answeringModel.get() != model && firstTokenAt.get() != 0) {
+				terminalPrinter.println("Answered by the fallback model " + ModelNames.name(answeringModel.get())
+						+ ", as " + ModelNames.name(model) + " was unavailable.");
+			}
+			suggestion.filter(fast -> !modelSuggested.getAndSet(true)).ifPresent(this::suggestModel);
 		}
 		catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 		}
+		finally {
+			terminal.handle(Terminal.Signal.INT, previousHandler);
+		}
+		long firstToken = firstTokenAt.get();
+		return new Turn((firstToken != 0) ? firstToken - start : 0,
+				(firstToken != 0 && renderedAt.get() != 0) ? renderedAt.get() - firstToken : 0, answerTokens.get(),
+				persistNanos.get(), error.get());
+	}
+
+	/**
+	 * Ends a turn: flushes the rendered answer, stores the turn and releases the prompt.
+	 * @param message The user message of the turn.
+	 * @param answer The answer, or the part of it that was received.
+	 * @param signal The signal that ended the response.
+	 * @param model The model that generated the answer.
+	 * @param renderedAt Set to the time the answer was flushed to the terminal.
+	 * @param persistNanos Set to the time spent storing the turn.
+	 * @param latch The latch the prompt waits on.
+	 */
+	private void endTurn(String message, StringBuilder answer, SignalType signal, TextCompletionModel model,
+			AtomicLong renderedAt, AtomicLong persistNanos, CountDownLatch latch) {
+		try {
+			streamRenderer.flush();
+			renderedAt.set(System.nanoTime());
+			terminalPrinter.newLine();
+			persistNanos.set(persistTurn(message, answer.toString(), signal, model));
+		}
+		finally {
+			latch.countDown();
+		}
+	}
+
+	/**
+	 * Adds the answer to the current conversation and stores the turn, storing the
+	 * conversation first if this is its first turn. An answer that was cancelled or
+	 * failed is stored as truncated; if no part of it was received, the turn is dropped
+	 * instead, so that the user message is not left in the conversation without an
+	 * answer. The model that generated the answer is stored with it, and the active model
+	 * with the conversation.
+	 * @param message The user message of the turn.
+	 * @param answer The answer, or the part of it that was received.
+	 * @param signal The signal that ended the response.
+	 * @param model The model that generated the answer.
+	 * @return The time spent storing the turn, in nanoseconds, or 0 if it was dropped.
+	 */
+	private long persistTurn(String message, String answer, SignalType signal, TextCompletionModel model) {
+		boolean cancelled = signal == SignalType.CANCEL;
+		boolean truncated = signal != SignalType.ON_COMPLETE;
+		if (truncated && answer.isEmpty()) {
+			conversationCommand.getMessages().removeLast();
+			if (cancelled) {
+				terminalPrinter.println("Cancelled.");
+			}
+			return 0;
+		}
+
+		long persistStart = System.nanoTime();
+		conversationCommand.updateConversationModel(modelSelector.getActiveModel());
+		if (conversationCommand.getConversationStored().compareAndSet(false, true)) {
+			conversationCommand.storeConversation(message);
+		}
+		conversationCommand.addMessage(answer, MessageRole.ASSISTANT);
+		conversationCommand.updateCurrentConversation(message, MessageRole.USER);
+		conversationCommand.updateCurrentConversation(answer, MessageRole.ASSISTANT, truncated, model);
+		long persistNanos = System.nanoTime() - persistStart;
+		chatMetrics.recordDatabaseWrite("turn", persistNanos);
+		warmPath.prepare(conversationCommand.getMessages());
+		if (cancelled) {
+			terminalPrinter.println("Cancelled, the answer is truncated.");
+		}
+		return persistNanos;
+	}
+
+	/**
+	 * Suggests switching to the fast model, whose recent time to first token is lower
+	 * than that of the active model.
+	 * @param fast The fast model.
+	 */
+	private void suggestModel(TextCompletionModel fast) {
+		Map<TextCompletionModel, ModelSelector.ModelStats> stats = modelSelector.getStats();
+		ModelSelector.ModelStats fastStats = stats.get(fast);
+		ModelSelector.ModelStats activeStats = stats.get(modelSelector.getActiveModel());
+		if (fastStats == null || activeStats == null) {
+			return;
+		}
+		terminalPrinter.println("Tip: " + ModelNames.name(fast) + " has been answering short prompts faster ("
+				+ Math.round(fastStats.firstTokenMillis()) + " ms to first token, versus "
+				+ Math.round(activeStats.firstTokenMillis()) + " ms). Switch with ':model " + ModelNames.name(fast)
+				+ "', or set chat.routing.enabled=true to route short prompts automatically.");
 	}
 
 	/**
@@ -135,31 +353,60 @@ public class ChatGptCommand {
 	}
 
 	/**
-	 * Normalizes the output generated by the ChatGPT API, removing unnecessary new lines.
+	 * Normalizes the output generated by the ChatGPT API, removing unnecessary new lines:
+	 * a delta that is only a paragraph break is dropped before the first result and
+	 * printed as a single new line after it. This runs for every delta, so it compares
+	 * the delta instead of matching a pattern.
 	 * @param output The output generated by the ChatGPT API.
 	 * @param isFirstResultPrinted An atomic boolean flag to check if this is the first
 	 * result printed.
 	 * @return The normalized output string.
 	 */
-	private static String normalizeOutput(String output, AtomicBoolean isFirstResultPrinted) {
-		Matcher matcher = NEW_LINE_PATTERN.matcher(output);
-		if (matcher.matches()) {
-			if (!isFirstResultPrinted.getAndSet(true)) {
-				return matcher.replaceAll("");
-			}
-			return matcher.replaceAll("\n");
+	public static String normalizeOutput(String output, AtomicBoolean isFirstResultPrinted) {
+		if (PARAGRAPH_BREAK.equals(output)) {
+			return isFirstResultPrinted.getAndSet(true) ? "\n" : "";
 		}
 		return output;
 	}
 
+	/**
+	 * Tells the user why the request failed, after retries and the fallback model, if
+	 * any, have been tried.
+	 * @param throwable The error of the request.
+	 */
 	private void handleApiException(Throwable throwable) {
-		if (throwable instanceof WebClientResponseException.TooManyRequests) {
+		if (throwable instanceof WebClientResponseException.Unauthorized) {
 			terminalPrinter.println(
 					"There might be an issue with your API key." + " Please check your API key and try again.");
 		}
+		else if (throwable instanceof WebClientResponseException.TooManyRequests) {
+			terminalPrinter.println("The ChatGPT API is rate limiting requests. Please wait a moment and try again.");
+		}
+		else if (throwable instanceof CircuitBreakerOpenException ex) {
+			terminalPrinter.println("The ChatGPT API keeps failing for " + ex.getModel() + ". Please try again in "
+					+ Math.max(ex.getRetryAfter().toSeconds(), 1) + " seconds.");
+		}
+		else if (throwable instanceof TimeoutException) {
+			terminalPrinter.println("The ChatGPT API stopped responding for "
+					+ chatGptProperties.idleTimeout().toSeconds() + " seconds. Please try again.");
+		}
 		else {
-			terminalPrinter.println("Oops, something went wrong. Try reloading the conversation.");
+			terminalPrinter.println("Oops, something went wrong. Please try again.");
 		}
 	}
 
+	/**
+	 * The measurements of a chat turn.
+	 * @param firstTokenNanos The time from sending the request to receiving the first
+	 * delta, or 0 if none was received.
+	 * @param renderNanos The time from the first delta to the answer flushed to the
+	 * terminal, or 0 if no delta was received.
+	 * @param tokens The number of tokens of the answer, or 0 unless it was complete.
+	 * @param persistNanos The time spent storing the turn, or 0 if it was dropped.
+	 * @param error The type of the error that ended the turn, {@code cancelled} if it was
+	 * cancelled, or {@code null} if the answer was complete.
+	 */
+	record Turn(long firstTokenNanos, long renderNanos, int tokens, long persistNanos, String error) {
+	}
+
 }
@@ -0,0 +1,206 @@
+package com.shahabkondri.chatgpt.shell.command;
+
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.completion.CompletionService;
+import com.shahabkondri.chatgpt.shell.completion.ModelNames;
+import com.shahabkondri.chatgpt.shell.completion.ModelSelector;
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import com.shahabkondri.chatgpt.shell.session.ContextWindow;
+import com.shahabkondri.chatgpt.shell.session.TokenCounter;
+import com.shahabkondri.chatgpt.shell.shell.Spinner;
+import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ShellComponent} that sends the same prompt, with the history of the current
+ * conversation, to several models at the same time and compares their answers. The
+ * answers are printed one after another, each under a header with its model, as soon as
+ * it is complete, followed by a summary of the time to first token, the total latency and
+ * the number of tokens of every model. Answers always come from the compared models,
+ * without falling back to another model, and compared prompts and answers are not added
+ * to the conversation. Their latencies are added to the statistics of the models, which
+ * the {@code :model} command displays.
+ *
+ * @author Shahab Kondri
+ */
+@ShellComponent
+public class CompareCommand {
+
+	private static final String SUMMARY_FORMAT = "%-16s %12s %12s %8s %10s";
+
+	private final CompletionService completionService;
+
+	private final ConversationCommand conversationCommand;
+
+	private final ContextWindow contextWindow;
+
+	private final TokenCounter tokenCounter;
+
+	private final ChatGptProperties chatGptProperties;
+
+	private final ModelSelector modelSelector;
+
+	private final Spinner spinner;
+
+	private final TerminalPrinter terminalPrinter;
+
+	private final Scheduler blockingScheduler;
+
+	/**
+	 * Constructs a new CompareCommand.
+	 * @param completionService The service for sending requests to the ChatGPT API.
+	 * @param conversationCommand The ConversationCommand object that holds the history of
+	 * the current conversation.
+	 * @param contextWindow The context window that limits the history sent to each model.
+	 * @param tokenCounter The token counter for measuring the answers.
+	 * @param chatGptProperties The properties for the ChatGPT API.
+	 * @param modelSelector The selector that keeps the statistics of the models.
+	 * @param spinner The spinner for showing loading state.
+	 * @param terminalPrinter The terminal printer for printing the answers.
+	 * @param blockingScheduler The scheduler that prints the answers.
+	 */
+	public CompareCommand(CompletionService completionService, ConversationCommand conversationCommand,
+			ContextWindow contextWindow, TokenCounter tokenCounter, ChatGptProperties chatGptProperties,
+			ModelSelector modelSelector, Spinner spinner, TerminalPrinter terminalPrinter,
+			Scheduler blockingScheduler) {
+		this.completionService = completionService;
+		this.conversationCommand = conversationCommand;
+		this.contextWindow = contextWindow;
+		this.tokenCounter = tokenCounter;
+		this.chatGptProperties = chatGptProperties;
+		this.modelSelector = modelSelector;
+		this.spinner = spinner;
+		this.terminalPrinter = terminalPrinter;
+		this.blockingScheduler = blockingScheduler;
+	}
+
+	/**
+	 * Sends the prompt to the given models concurrently and prints their answers, fastest
+	 * first, and a summary of their latencies and token counts.
+	 * <p>
+	 * example: <pre>
+	 * :> :compare --models gpt_4,gpt_3_5_turbo Explain the CAP theorem in two sentences.
+	 * </pre>
+	 * @param models The comma-separated names of the models to compare.
+	 * @param prompt The user message to send to every model.
+	 */
+	@ShellMethod(key = "compare", value = "Sends a prompt to several models concurrently and compares the answers.")
+	public void compare(@ShellOption String models, @ShellOption(arity = Integer.MAX_VALUE) String... prompt) {
+		List<TextCompletionModel> targets;
+		try {
+			targets = ModelNames.parseList(models);
+		}
+		catch (IllegalArgumentException ex) {
+			terminalPrinter.println(ex.getMessage());
+			return;
+		}
+
+		List<ChatGptRequest.Message> history = new ArrayList<>(conversationCommand.getMessages());
+		history.add(new ChatGptRequest.Message(MessageRole.USER, String.join(" ", prompt)));
+
+		spinner.startSpinner();
+		List<Comparison> comparisons = Flux.fromIterable(targets).flatMap(model -> send(model, history))
+				.publishOn(blockingScheduler).doOnNext(comparison -> {
+					spinner.stopSpinner();
+					printAnswer(comparison);
+				}).collectList().block();
+		spinner.stopSpinner();
+
+		terminalPrinter.println(String.format(Locale.ROOT, SUMMARY_FORMAT, "model", "first token", "total",
+				"tokens", "tokens/s"));
+		comparisons.stream().sorted(Comparator.comparing(comparison -> targets.indexOf(comparison.model())))
+				.forEach(comparison -> terminalPrinter.println(summarize(comparison)));
+	}
+
+	/**
+	 * Sends the history to a single model, fitted into the context window of that model,
+	 * and collects the answer.
+	 * @param model The model to send the history to.
+	 * @param history The history, ending with the prompt.
+	 * @return A {@link Mono} of the comparison, which never completes with an error.
+	 */
+	private Mono<Comparison> send(TextCompletionModel model, List<ChatGptRequest.Message> history) {
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			AtomicLong firstTokenAt = new AtomicLong();
+			AtomicBoolean isFirstResultPrinted = new AtomicBoolean(false);
+			return completionService.stream(new ChatGptRequest(model, contextWindow.fit(model, history)), false)
+					.doOnNext(__ -> firstTokenAt.compareAndSet(0, System.nanoTime()))
+					.map(content -> ChatGptCommand.normalizeOutput(content, isFirstResultPrinted))
+					.timeout(chatGptProperties.idleTimeout()).collect(Collectors.joining())
+					.map(answer -> new Comparison(model, answer, elapsed(start, firstTokenAt.get()),
+							Duration.ofNanos(System.nanoTime() - start), tokenCounter.count(answer), null))
+					.doOnNext(this::recordStats)
+					.onErrorResume(throwable -> {
+						modelSelector.recordFailure(model);
+						return Mono.just(new Comparison(model, null, elapsed(start, firstTokenAt.get()),
+								Duration.ofNanos(System.nanoTime() - start), 0, ChatMetrics.errorType(throwable)));
+					});
+		});
+	}
+
+	private void recordStats(Comparison comparison) {
+		if (!comparison.firstToken().isZero()) {
+			modelSelector.recordSuccess(comparison.model(), comparison.firstToken().toNanos(),
+					comparison.total().minus(comparison.firstToken()).toNanos(), comparison.tokens());
+		}
+	}
+
+	private void printAnswer(Comparison comparison) {
+		terminalPrinter.println("=== " + ModelNames.name(comparison.model()) + " ===");
+		terminalPrinter.println((comparison.error() != null) ? "Failed: " + comparison.error() : comparison.answer());
+		terminalPrinter.newLine();
+	}
+
+	private static String summarize(Comparison comparison) {
+		if (comparison.error() != null) {
+			return String.format(Locale.ROOT, SUMMARY_FORMAT, ModelNames.name(comparison.model()), "-",
+					millis(comparison.total()), "-", "failed: " + comparison.error());
+		}
+		long streamMillis = comparison.total().minus(comparison.firstToken()).toMillis();
+		String tokensPerSecond = (streamMillis > 0) ? String.valueOf(comparison.tokens() * 1000L / streamMillis)
+				: "-";
+		return String.format(Locale.ROOT, SUMMARY_FORMAT, ModelNames.name(comparison.model()),
+				millis(comparison.firstToken()), millis(comparison.total()), comparison.tokens(), tokensPerSecond);
+	}
+
+	private static Duration elapsed(long start, long end) {
+		return Duration.ofNanos((end != 0) ? end - start : 0);
+	}
+
+	private static String millis(Duration duration) {
+		return duration.toMillis() + " ms";
+	}
+
+	/**
+	 * The answer of one model.
+	 * @param model The model.
+	 * @param answer The answer, or {@code null} if the request failed.
+	 * @param firstToken The time to the first delta of the answer, zero if none was
+	 * received.
+	 * @param total The time to the end of the answer, or to the failure.
+	 * @param tokens The number of tokens of the answer.
+	 * @param error The type of the error, or {@code null} if the request succeeded.
+	 */
+	record Comparison(TextCompletionModel model, String answer, Duration firstToken, Duration total, int tokens,
+			String error) {
+	}
+
+}
@@ -1,26 +1,46 @@
 package com.shahabkondri.chatgpt.shell.command;
 
-import com.shahabkondri.chatgpt.api.client.ChatGptClient;
 import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
 import com.shahabkondri.chatgpt.api.model.MessageRole;
 import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.completion.CompletionService;
+import com.shahabkondri.chatgpt.shell.completion.ModelNames;
+import com.shahabkondri.chatgpt.shell.completion.ModelSelector;
 import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import com.shahabkondri.chatgpt.shell.session.ContextWindow;
 import com.shahabkondri.chatgpt.shell.session.Conversation;
+import com.shahabkondri.chatgpt.shell.session.ConversationArchive;
 import com.shahabkondri.chatgpt.shell.session.ConversationRepository;
+import com.shahabkondri.chatgpt.shell.session.ConversationSummary;
 import com.shahabkondri.chatgpt.shell.session.MessageEntity;
 import com.shahabkondri.chatgpt.shell.session.MessageRepository;
+import com.shahabkondri.chatgpt.shell.session.MessageSearch;
+import com.shahabkondri.chatgpt.shell.session.MessageWriteBehindQueue;
+import com.shahabkondri.chatgpt.shell.session.TokenCounter;
 import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -35,67 +55,121 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @ShellComponent
 public class ConversationCommand {
 
-	private final ChatGptClient chatGptClient;
+	private final CompletionService completionService;
 
 	private final ConversationRepository conversationRepository;
 
 	private final MessageRepository messageRepository;
 
+	private final MessageWriteBehindQueue messageWriteBehindQueue;
+
+	private final MessageSearch messageSearch;
+
+	private final ConversationArchive conversationArchive;
+
+	private final ContextWindow contextWindow;
+
+	private final TokenCounter tokenCounter;
+
 	private final ChatGptProperties chatGptProperties;
 
+	private final ModelSelector modelSelector;
+
 	private final TerminalPrinter terminalPrinter;
 
+	private final Scheduler blockingScheduler;
+
+	private final ChatMetrics chatMetrics;
+
 	private final LinkedList<ChatGptRequest.Message> messages = new LinkedList<>();
 
 	private Conversation conversation = new Conversation();
 
 	private final AtomicBoolean conversationStored = new AtomicBoolean(false);
 
+	private static final Duration TITLE_TIMEOUT = Duration.ofSeconds(5);
+
+	private static final int LOAD_WINDOW_SIZE = 20;
+
+	private static final DateTimeFormatter LAST_UPDATED_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+			.withZone(ZoneId.systemDefault());
+
 	/**
 	 * Constructs a new ConversationCommand. It initializes a new conversation and loads a
 	 * system message if one is specified in the ChatGPT properties.
-	 * @param chatGptClient The client for interacting with the ChatGPT API.
+	 * @param completionService The service for sending requests to the ChatGPT API.
 	 * @param conversationRepository The repository for storing and retrieving
 	 * conversations.
 	 * @param messageRepository The repository for storing and retrieving messages.
+	 * @param messageWriteBehindQueue The queue that persists new messages in batches.
+	 * @param messageSearch The full-text search over stored messages.
+	 * @param conversationArchive The export and import of stored conversations.
+	 * @param contextWindow The context window that limits the messages loaded from a
+	 * stored conversation.
+	 * @param tokenCounter The token counter for measuring loaded messages.
 	 * @param chatGptProperties The properties for the ChatGPT API.
+	 * @param modelSelector The selector of the active model, which is restored when a
+	 * conversation is loaded.
 	 * @param terminalPrinter The terminal printer for printing messages.
+	 * @param blockingScheduler The scheduler that stores generated titles.
+	 * @param chatMetrics The metrics of the chat pipeline.
 	 */
-	public ConversationCommand(ChatGptClient chatGptClient, ConversationRepository conversationRepository,
-			MessageRepository messageRepository, ChatGptProperties chatGptProperties, TerminalPrinter terminalPrinter) {
-		this.chatGptClient = chatGptClient;
+	public ConversationCommand(CompletionService completionService, ConversationRepository conversationRepository,
+			MessageRepository messageRepository, MessageWriteBehindQueue messageWriteBehindQueue,
+			MessageSearch messageSearch, ConversationArchive conversationArchive, ContextWindow contextWindow,
+			TokenCounter tokenCounter, ChatGptProperties chatGptProperties, ModelSelector modelSelector,
+			TerminalPrinter terminalPrinter, Scheduler blockingScheduler, ChatMetrics chatMetrics) {
+		this.completionService = completionService;
 		this.conversationRepository = conversationRepository;
 		this.messageRepository = messageRepository;
+		this.messageWriteBehindQueue = messageWriteBehindQueue;
+		this.messageSearch = messageSearch;
+		this.conversationArchive = conversationArchive;
+		this.contextWindow = contextWindow;
+		this.tokenCounter = tokenCounter;
 		this.chatGptProperties = chatGptProperties;
+		this.modelSelector = modelSelector;
 		this.terminalPrinter = terminalPrinter;
+		this.blockingScheduler = blockingScheduler;
+		this.chatMetrics = chatMetrics;
 
 		loadSystemMessage();
 	}
 
 	/**
-	 * Generates a title for the current conversation using the ChatGPT API. The title is
-	 * generated based on the user's first prompt in the conversation.
+	 * Stores the current conversation for the first time. The conversation is saved right
+	 * away with a title derived locally from the user's first prompt, so that its
+	 * messages can be persisted without waiting for the ChatGPT API. A more descriptive
+	 * title is then generated in the background.
+	 * @param firstPrompt The user's first prompt in the conversation.
+	 */
+	public void storeConversation(String firstPrompt) {
+		updateCurrentConversation(Conversation.deriveTitle(firstPrompt));
+		generateConversationTitle(firstPrompt);
+	}
+
+	/**
+	 * Generates a title for the current conversation using the configured title model of
+	 * the ChatGPT API. The title is generated based on the user's first prompt in the
+	 * conversation. This method does not block: the title is requested in the background
+	 * and replaces the current title once it arrives. If the API does not answer within a
+	 * few seconds, the current title is kept.
 	 * @param firstPrompt The user's first prompt in the conversation.
 	 */
 	public void generateConversationTitle(String firstPrompt) {
 		ChatGptRequest.Message message = new ChatGptRequest.Message(MessageRole.SYSTEM,
 				SystemMessagePrompt.GENERATE_CONVERSATION_TITLE.getSystemMessage(firstPrompt));
-		ChatGptRequest request = new ChatGptRequest(TextCompletionModel.GPT_3_5_TURBO, List.of(message));
-		StringBuilder builder = new StringBuilder();
-		CountDownLatch latch = new CountDownLatch(1);
-
-		chatGptClient.completions(request).filter(response -> response.choices().get(0).delta().content() != null)
-				.doOnNext(response -> builder.append(response.choices().get(0).delta().content()))
-				.timeout(Duration.ofSeconds(5)).doFinally(signal -> {
-					updateCurrentConversation(builder.toString());
-					latch.countDown();
-				}).onErrorResume(throwable -> Mono.empty()).subscribe();
-		try {
-			latch.await();
-		}
-		catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-		}
+		ChatGptRequest request = new ChatGptRequest(chatGptProperties.titleModel(), List.of(message));
+		Conversation target = conversation;
+		long start = System.nanoTime();
+
+		completionService.complete(request).timeout(TITLE_TIMEOUT).map(String::strip).filter(StringUtils::hasText)
+				.doOnSuccess(title -> chatMetrics.recordTitleGeneration(System.nanoTime() - start,
+						(title != null) ? "success" : "empty"))
+				.doOnError(throwable -> chatMetrics.recordTitleGeneration(System.nanoTime() - start,
+						(throwable instanceof TimeoutException) ? "timeout" : "error"))
+				.publishOn(blockingScheduler).doOnNext(title -> updateConversationTitle(target, title))
+				.onErrorResume(throwable -> Mono.empty()).subscribe();
 	}
 
 	/**
@@ -113,41 +187,197 @@ public class ConversationCommand {
 	}
 
 	/**
-	 * Displays the IDs and titles of all stored conversations. The conversations are
-	 * retrieved from the database.
+	 * Displays the IDs, titles, message counts and last update times of the stored
+	 * conversations, one page at a time. Only a summary of each conversation is read from
+	 * the database; messages are not loaded.
+	 * <p>
+	 * example: <pre>
+	 * :> :conversation --all --page 2 --size 10
+	 * </pre>
+	 * @param page The page to display, starting at 1.
+	 * @param size The number of conversations per page.
 	 */
-	@ShellMethod(key = "conversation --all", value = "Displays all stored conversations.")
-	public void conversations() {
-		List<Conversation> conversations = conversationRepository.findAll();
-		if (conversations.isEmpty()) {
+	@ShellMethod(key = "conversation --all", value = "Displays stored conversations, one page at a time.")
+	public void conversations(@ShellOption(defaultValue = "1") int page, @ShellOption(defaultValue = "20") int size) {
+		if (page < 1 || size < 1) {
+			terminalPrinter.println("Page and size must be greater than zero.");
+			return;
+		}
+
+		messageWriteBehindQueue.flush();
+		Page<ConversationSummary> summaries = conversationRepository
+				.findSummaries(PageRequest.of(page - 1, size, Sort.by("id")));
+		if (summaries.getTotalElements() == 0) {
 			terminalPrinter.println("No conversations have been stored.");
 		}
+		else if (!summaries.hasContent()) {
+			terminalPrinter.println("No conversations on page " + page + " of " + summaries.getTotalPages() + ".");
+		}
 		else {
-			for (Conversation conversation : conversations) {
-				terminalPrinter
-						.println("Conversation Id: " + conversation.getId() + " | Title: " + conversation.getTitle());
+			for (ConversationSummary summary : summaries) {
+				terminalPrinter.println("Conversation Id: " + summary.getId() + " | Title: " + summary.getTitle()
+						+ " | Messages: " + summary.getMessageCount() + " | Last updated: "
+						+ formatLastUpdated(summary.getLastUpdated()));
 			}
+			terminalPrinter.println("Page " + page + " of " + summaries.getTotalPages() + " ("
+					+ summaries.getTotalElements() + " conversations)");
+		}
+	}
+
+	/**
+	 * Searches the messages of all stored conversations for the given terms and displays
+	 * the best matches, with the conversation they belong to and a snippet of the text
+	 * around the first match. Only messages that contain all terms are found.
+	 * <p>
+	 * example: <pre>
+	 * :> :conversation --search virtual threads --limit 5
+	 * </pre>
+	 * @param terms The terms to search for.
+	 * @param limit The maximum number of messages to display.
+	 */
+	@ShellMethod(key = "conversation --search", value = "Searches the messages of stored conversations.")
+	public void searchConversations(@ShellOption(arity = Integer.MAX_VALUE) String[] terms,
+			@ShellOption(defaultValue = "10") int limit) {
+		if (limit < 1) {
+			terminalPrinter.println("Limit must be greater than zero.");
+			return;
+		}
+
+		messageWriteBehindQueue.flush();
+		List<MessageSearch.Hit> hits = messageSearch.search(String.join(" ", terms), limit);
+		if (hits.isEmpty()) {
+			terminalPrinter.println("No messages found.");
+			return;
+		}
+		for (MessageSearch.Hit hit : hits) {
+			terminalPrinter.println("Conversation Id: " + hit.conversationId() + " | Title: " + hit.title() + " | "
+					+ hit.role().name().toLowerCase(Locale.ROOT) + ": " + hit.snippet());
+		}
+	}
+
+	/**
+	 * Exports all stored conversations and their messages to a JSON lines file, one line
+	 * per conversation followed by one line per message. The conversations are streamed
+	 * from the database, so the export does not load them into memory.
+	 * <p>
+	 * example: <pre>
+	 * :> :conversation --export backup.jsonl.gz
+	 * </pre>
+	 * @param file The file to write, compressed with gzip if its name ends with
+	 * {@code .gz}.
+	 */
+	@ShellMethod(key = "conversation --export", value = "Exports stored conversations to a JSON lines file.")
+	public void exportConversations(@ShellOption String file) {
+		messageWriteBehindQueue.flush();
+		try {
+			ConversationArchive.Progress progress = conversationArchive.exportTo(Path.of(file),
+					p -> terminalPrinter.println("Exported " + formatProgress(p)));
+			terminalPrinter.println("Export complete. " + formatProgress(progress) + " written to " + file);
+		}
+		catch (IOException | RuntimeException ex) {
+			terminalPrinter.println("Export failed: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Imports the conversations of a file written by {@code --export} as new
+	 * conversations. The file is read and stored in batches, so the import does not load
+	 * it into memory. If an invalid line is found, the conversations imported up to that
+	 * point are kept.
+	 * <p>
+	 * example: <pre>
+	 * :> :conversation --import backup.jsonl.gz
+	 * </pre>
+	 * @param file The file to read, compressed with gzip if its name ends with
+	 * {@code .gz}.
+	 */
+	@ShellMethod(key = "conversation --import", value = "Imports conversations from a JSON lines file.")
+	public void importConversations(@ShellOption String file) {
+		try {
+			ConversationArchive.Progress progress = conversationArchive.importFrom(Path.of(file),
+					p -> terminalPrinter.println("Imported " + formatProgress(p)));
+			terminalPrinter.println("Import complete. " + formatProgress(progress) + " read from " + file);
+		}
+		catch (IOException | RuntimeException ex) {
+			terminalPrinter.println("Import failed: " + ex.getMessage());
 		}
 	}
 
 	/**
-	 * Loads a conversation by its ID from the database. If a conversation with the given
-	 * ID is found, it loads the conversation and informs the user. If no conversation
-	 * with the given ID is found, it informs the user that no conversation was found.
+	 * Loads a conversation by its ID from the database. The model that was active at its
+	 * latest answer, if known, becomes the active model again. Only the system message
+	 * and the most recent messages that fit into the context window of the active model
+	 * are read, walking the conversation backwards one window of messages at a time.
+	 * Older messages stay in the database and can be displayed with {@code --show}. If no
+	 * conversation with the given ID is found, it informs the user that no conversation
+	 * was found.
 	 * @param conversationId The ID of the conversation to load.
 	 */
 	@ShellMethod(key = "conversation --load", value = "Load a conversation by its ID.")
 	public void loadConversation(@ShellOption long conversationId) {
+		messageWriteBehindQueue.flush();
 		conversationRepository.findById(conversationId).ifPresentOrElse(c -> {
 			conversation = c;
-			List<ChatGptRequest.Message> chatGptMessages = MessageEntity.toChatGptMessages(c.getMessages());
+			if (c.getModel() != null) {
+				modelSelector.setActiveModel(c.getModel());
+			}
+			List<ChatGptRequest.Message> chatGptMessages = loadRecentMessages(c);
 			messages.clear();
 			messages.addAll(chatGptMessages);
-			terminalPrinter.println(
-					"Conversation loaded. ID: " + conversation.getId() + " | Title: " + conversation.getTitle());
+			terminalPrinter.println("Conversation loaded. ID: " + conversation.getId() + " | Title: "
+					+ conversation.getTitle() + " | Model: " + ModelNames.name(modelSelector.getActiveModel())
+					+ " | Messages in context: " + chatGptMessages.size());
 		}, () -> terminalPrinter.println("No conversation found with ID: " + conversationId));
 	}
 
+	/**
+	 * Displays the messages of a stored conversation, one page at a time. The first page
+	 * holds the most recent messages; higher pages go further back in the conversation.
+	 * Within a page, messages are displayed oldest first, and answers name the model that
+	 * generated them, if known.
+	 * <p>
+	 * example: <pre>
+	 * :> :conversation --show
+	 * :> :conversation --show --page 2 --id 1234
+	 * </pre>
+	 * @param id The ID of the conversation, or the current or last loaded conversation if
+	 * omitted.
+	 * @param page The page to display, starting at 1 with the most recent messages.
+	 * @param size The number of messages per page.
+	 */
+	@ShellMethod(key = "conversation --show", value = "Displays the messages of a conversation, one page at a time.")
+	public void showConversation(@ShellOption(defaultValue = ShellOption.NULL) Long id,
+			@ShellOption(defaultValue = "1") int page, @ShellOption(defaultValue = "20") int size) {
+		if (page < 1 || size < 1) {
+			terminalPrinter.println("Page and size must be greater than zero.");
+			return;
+		}
+		if (id == null && conversation.getId() == null) {
+			terminalPrinter.println("No active conversation found.");
+			return;
+		}
+
+		messageWriteBehindQueue.flush();
+		Long conversationId = (id != null) ? id : conversation.getId();
+		Slice<MessageEntity> slice = messageRepository.findByConversationId(conversationId,
+				PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "id")));
+		if (!slice.hasContent()) {
+			terminalPrinter.println((page == 1) ? "No messages found for conversation ID: " + conversationId
+					: "No messages on page " + page + ".");
+			return;
+		}
+		List<MessageEntity> pageMessages = slice.getContent();
+		for (int index = pageMessages.size() - 1; index >= 0; index--) {
+			MessageEntity messageEntity = pageMessages.get(index);
+			String model = (messageEntity.getModel() != null) ? " (" + ModelNames.name(messageEntity.getModel()) + ")"
+					: "";
+			terminalPrinter.println(messageEntity.getRole().name().toLowerCase(Locale.ROOT) + model + ": "
+					+ messageEntity.getContent() + ((messageEntity.isTruncated()) ? " [truncated]" : ""));
+		}
+		terminalPrinter.println("Page " + page + ((slice.hasNext()) ? " (older messages on page " + (page + 1) + ")"
+				: " (start of the conversation)"));
+	}
+
 	/**
 	 * Starts a new conversation. If a conversation is already active, it clears the
 	 * current conversation and starts a new one. The new conversation will be stored in
@@ -174,6 +404,7 @@ public class ConversationCommand {
 	 */
 	@ShellMethod(key = "conversation --delete", value = "Deletes a conversation by its ID.")
 	public void deleteConversation(@ShellOption long conversationId) {
+		messageWriteBehindQueue.flush();
 		boolean exists = conversationRepository.existsById(conversationId);
 		if (exists) {
 			conversationRepository.deleteById(conversationId);
@@ -194,12 +425,87 @@ public class ConversationCommand {
 	 */
 	@ShellMethod(key = "conversation --delete-all", value = "Deletes a conversation by its ID.")
 	public void deleteAllConversation() {
+		messageWriteBehindQueue.flush();
 		conversationRepository.deleteAll();
 		resetConversation();
 		conversationStored.set(false);
 		terminalPrinter.println("All conversation are deleted.");
 	}
 
+	/**
+	 * Updates the title of the given conversation, which may no longer be the current one
+	 * by the time a generated title arrives. Only the title column is written, so that
+	 * the conversation's messages are left untouched.
+	 * @param target The conversation whose title is updated.
+	 * @param title The new title of the conversation.
+	 */
+	private void updateConversationTitle(Conversation target, String title) {
+		target.setTitle(title);
+		conversationRepository.updateTitle(target.getId(), title);
+	}
+
+	/**
+	 * Formats the last update time of a conversation in the system time zone.
+	 * @param lastUpdated The last update time, may be {@code null}.
+	 * @return The formatted time, or "-" if it is unknown.
+	 */
+	private static String formatLastUpdated(Instant lastUpdated) {
+		return (lastUpdated != null) ? LAST_UPDATED_FORMATTER.format(lastUpdated) : "-";
+	}
+
+	/**
+	 * Reads the system message and the most recent messages of a stored conversation that
+	 * fit into the token budget of the active model. The messages are read backwards in
+	 * windows of {@value #LOAD_WINDOW_SIZE}, keyed by the ID of the oldest message read
+	 * so far, until the budget is used up or the start of the conversation is reached.
+	 * The most recent message is always included.
+	 * @param stored The stored conversation.
+	 * @return The system message, if any, followed by the recent messages, oldest first.
+	 */
+	private List<ChatGptRequest.Message> loadRecentMessages(Conversation stored) {
+		int budget = contextWindow.budget(modelSelector.getActiveModel());
+		Optional<ChatGptRequest.Message> systemMessage = messageRepository
+				.findByConversationAndRole(stored, MessageRole.SYSTEM).map(MessageEntity::toChatGptMessage);
+		int used = systemMessage.map(tokenCounter::count).orElse(0);
+
+		LinkedList<ChatGptRequest.Message> recentMessages = new LinkedList<>();
+		long beforeId = Long.MAX_VALUE;
+		boolean budgetUsed = false;
+		List<MessageEntity> window;
+		do {
+			window = messageRepository.findByConversationIdAndIdLessThanOrderByIdDesc(stored.getId(), beforeId,
+					PageRequest.of(0, LOAD_WINDOW_SIZE));
+			for (MessageEntity messageEntity : window) {
+				beforeId = messageEntity.getId();
+				if (messageEntity.getRole() == MessageRole.SYSTEM) {
+					continue;
+				}
+				ChatGptRequest.Message message = MessageEntity.toChatGptMessage(messageEntity);
+				int tokens = tokenCounter.count(message);
+				if (used + tokens > budget && !recentMessages.isEmpty()) {
+					budgetUsed = true;
+					break;
+				}
+				used += tokens;
+				recentMessages.addFirst(message);
+			}
+		}
+		while (!budgetUsed && window.size() == LOAD_WINDOW_SIZE);
+
+		systemMessage.ifPresent(recentMessages::addFirst);
+		return recentMessages;
+	}
+
+	/**
+	 * Formats the progress of an export or import.
+	 * @param progress The progress to format.
+	 * @return The counts, elapsed time and throughput.
+	 */
+	private static String formatProgress(ConversationArchive.Progress progress) {
+		return progress.conversations() + " conversations and " + progress.messages() + " messages in "
+				+ progress.elapsed().toMillis() + " ms (" + progress.messagesPerSecond() + " messages/s)";
+	}
+
 	/**
 	 * Resets the current conversation by creating a new empty conversation, clearing the
 	 * messages, and loading the system message.
@@ -243,6 +549,7 @@ public class ConversationCommand {
 	 * system message if found, otherwise an empty Optional.
 	 */
 	private Optional<MessageEntity> findSystemMessage(Conversation conversation) {
+		messageWriteBehindQueue.flush();
 		return messageRepository.findByConversationAndRole(conversation, MessageRole.SYSTEM);
 	}
 
@@ -273,14 +580,49 @@ public class ConversationCommand {
 
 	/**
 	 * Creates a new message for the current conversation with the specified content and
-	 * role and saves it to the database. This method should be used when adding new user
-	 * or assistant messages to the conversation.
+	 * role and queues it to be saved to the database with the next batch. This method
+	 * should be used when adding new user or assistant messages to the conversation.
 	 * @param content The content of the new message.
 	 * @param role The role of the new message, either USER or ASSISTANT.
 	 */
 	public void updateCurrentConversation(String content, MessageRole role) {
-		updateCurrentConversation(
-				MessageEntity.toMessageEntity(new ChatGptRequest.Message(role, content), conversation));
+		updateCurrentConversation(content, role, false, null);
+	}
+
+	/**
+	 * Creates a new message for the current conversation, like
+	 * {@link #updateCurrentConversation(String, MessageRole)}, records the model of an
+	 * answer and marks it as truncated if it was cancelled before it was complete.
+	 * @param content The content of the new message.
+	 * @param role The role of the new message, either USER or ASSISTANT.
+	 * @param truncated Whether the message is an answer that was cancelled before it was
+	 * complete.
+	 * @param model The model that generated the answer, or {@code null} for other
+	 * messages.
+	 */
+	public void updateCurrentConversation(String content, MessageRole role, boolean truncated,
+			TextCompletionModel model) {
+		MessageEntity messageEntity = MessageEntity.toMessageEntity(new ChatGptRequest.Message(role, content),
+				conversation);
+		messageEntity.setTruncated(truncated);
+		messageEntity.setModel(model);
+		messageWriteBehindQueue.enqueue(messageEntity);
+	}
+
+	/**
+	 * Records the model that is active at the latest answer of the current conversation.
+	 * The model is stored with the conversation when it is first stored, and only the
+	 * model column is written afterwards, if the model changed.
+	 * @param model The active model.
+	 */
+	public void updateConversationModel(TextCompletionModel model) {
+		if (model == conversation.getModel()) {
+			return;
+		}
+		conversation.setModel(model);
+		if (conversation.getId() != null) {
+			conversationRepository.updateModel(conversation.getId(), model);
+		}
 	}
 
 	/**
@@ -0,0 +1,121 @@
+package com.shahabkondri.chatgpt.shell.command;
+
+import com.shahabkondri.chatgpt.shell.command.ChatGptCommand.Turn;
+import com.shahabkondri.chatgpt.shell.session.MessageWriteBehindQueue;
+import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link ShellComponent} that load-tests the shell against the mock OpenAI server of
+ * the 'mock' profile. It drives the turns through {@link ChatGptCommand}, so that they
+ * take the path of a prompt typed by the user, from the streamed request to the rendered
+ * reply and the persisted messages, and reports the time to first token, the rate at
+ * which tokens are rendered and the time spent persisting each turn.
+ *
+ * @author Shahab Kondri
+ */
+@ShellComponent
+@Profile("mock")
+public class LoadTestCommand {
+
+	private final ChatGptCommand chatGptCommand;
+
+	private final MessageWriteBehindQueue messageWriteBehindQueue;
+
+	private final TerminalPrinter terminalPrinter;
+
+	/**
+	 * Constructs a new LoadTestCommand.
+	 * @param chatGptCommand The chat command that runs the turns.
+	 * @param messageWriteBehindQueue The queue that persists new messages in batches.
+	 * @param terminalPrinter The terminal printer for printing the report.
+	 */
+	public LoadTestCommand(ChatGptCommand chatGptCommand, MessageWriteBehindQueue messageWriteBehindQueue,
+			TerminalPrinter terminalPrinter) {
+		this.chatGptCommand = chatGptCommand;
+		this.messageWriteBehindQueue = messageWriteBehindQueue;
+		this.terminalPrinter = terminalPrinter;
+	}
+
+	/**
+	 * Runs the given number of chat turns in the current conversation and prints a report
+	 * of their latencies. Failed turns are counted by error and, like in the chat
+	 * command, dropped from the conversation if no part of the reply was received. The
+	 * messages still queued for persistence are written before the report is printed. For
+	 * example, from a CI job:
+	 * <pre>
+	 * java -jar chat-gpt-shell.jar --spring.profiles.active=mock :load-test --turns 50
+	 * </pre>
+	 * @param turns The number of turns to run.
+	 * @param prompt The user message sent in each turn, followed by the turn number.
+	 */
+	@ShellMethod(key = "load-test", value = "Runs chat turns against the mock OpenAI server and reports latencies.")
+	public void loadTest(@ShellOption(defaultValue = "20") int turns,
+			@ShellOption(defaultValue = "Tell me something about load testing") String prompt) {
+		if (turns < 1) {
+			terminalPrinter.println("Turns must be greater than zero.");
+			return;
+		}
+
+		List<Turn> results = new ArrayList<>(turns);
+		Map<String, Integer> errors = new TreeMap<>();
+		for (int turn = 1; turn <= turns; turn++) {
+			Turn result = chatGptCommand.runTurn(prompt + " #" + turn);
+			if (result.error() != null) {
+				errors.merge(result.error(), 1, Integer::sum);
+			}
+			else {
+				results.add(result);
+			}
+		}
+		messageWriteBehindQueue.flush();
+		report(turns, results, errors);
+	}
+
+	private void report(int turns, List<Turn> results, Map<String, Integer> errors) {
+		terminalPrinter.println("Turns: " + results.size() + " of " + turns + " succeeded"
+				+ (errors.isEmpty() ? "" : " | Errors: " + errors));
+		if (results.isEmpty()) {
+			return;
+		}
+
+		long renderNanos = results.stream().mapToLong(Turn::renderNanos).sum();
+		long tokens = results.stream().mapToLong(Turn::tokens).sum();
+		double tokensPerSecond = (renderNanos > 0) ? tokens / (renderNanos / 1e9) : 0;
+		terminalPrinter.println("Time to first token: " + percentiles(results, Turn::firstTokenNanos));
+		terminalPrinter.println("Rendered: " + tokens + " tokens | " + String.format("%.1f", tokensPerSecond)
+				+ " tokens/s");
+		terminalPrinter.println("Persistence per turn: " + percentiles(results, Turn::persistNanos));
+	}
+
+	private static String percentiles(List<Turn> results, ToLongFunction<Turn> measure) {
+		List<Long> values = new ArrayList<>(results.size());
+		for (Turn result : results) {
+			values.add(measure.applyAsLong(result));
+		}
+		Collections.sort(values);
+		return "p50 " + millis(percentile(values, 0.5)) + " | p95 " + millis(percentile(values, 0.95)) + " | max "
+				+ millis(values.get(values.size() - 1));
+	}
+
+	private static long percentile(List<Long> sortedValues, double percentile) {
+		int index = (int) Math.ceil(percentile * sortedValues.size()) - 1;
+		return sortedValues.get(Math.max(0, index));
+	}
+
+	private static String millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+	}
+
+}
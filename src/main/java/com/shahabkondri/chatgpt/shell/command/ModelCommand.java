@@ -0,0 +1,93 @@
+package com.shahabkondri.chatgpt.shell.command;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.completion.ModelNames;
+import com.shahabkondri.chatgpt.shell.completion.ModelSelector;
+import com.shahabkondri.chatgpt.shell.configuration.RoutingProperties;
+import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link ShellComponent} that displays and switches the active text completion model,
+ * which the following prompts are sent to, and displays the rolling statistics that the
+ * {@link ModelSelector} keeps for every model used since the shell was started.
+ *
+ * @author Shahab Kondri
+ */
+@ShellComponent
+public class ModelCommand {
+
+	private static final String STATS_FORMAT = "%-16s %8s %12s %10s %8s";
+
+	private final ModelSelector modelSelector;
+
+	private final RoutingProperties routingProperties;
+
+	private final TerminalPrinter terminalPrinter;
+
+	/**
+	 * Constructs a new ModelCommand.
+	 * @param modelSelector The selector that holds the active model and its statistics.
+	 * @param routingProperties The properties that control the routing of short prompts.
+	 * @param terminalPrinter The terminal printer for printing the models.
+	 */
+	public ModelCommand(ModelSelector modelSelector, RoutingProperties routingProperties,
+			TerminalPrinter terminalPrinter) {
+		this.modelSelector = modelSelector;
+		this.routingProperties = routingProperties;
+		this.terminalPrinter = terminalPrinter;
+	}
+
+	/**
+	 * Switches the active model to the given one, or displays the active model, how short
+	 * prompts are routed and the recent time to first token, token rate and error rate of
+	 * every model used so far if no model is given.
+	 * <p>
+	 * example: <pre>
+	 * :> :model
+	 * :> :model gpt-3.5-turbo
+	 * </pre>
+	 * @param name The name of the model to switch to.
+	 */
+	@ShellMethod(key = "model", value = "Displays or switches the active model.")
+	public void model(@ShellOption(defaultValue = ShellOption.NULL) String name) {
+		if (name != null) {
+			try {
+				TextCompletionModel model = ModelNames.parse(name);
+				TextCompletionModel previous = modelSelector.setActiveModel(model);
+				terminalPrinter.println("Switched the active model from " + ModelNames.name(previous) + " to "
+						+ ModelNames.name(model) + ".");
+			}
+			catch (IllegalArgumentException ex) {
+				terminalPrinter.println(ex.getMessage());
+			}
+			return;
+		}
+
+		terminalPrinter.println("Active model: " + ModelNames.name(modelSelector.getActiveModel()));
+		terminalPrinter.println((routingProperties.enabled())
+				? "Routing: prompts of up to " + routingProperties.shortPromptTokens() + " tokens are sent to "
+						+ ModelNames.name(routingProperties.fastModel())
+				: "Routing: disabled");
+		Map<TextCompletionModel, ModelSelector.ModelStats> stats = modelSelector.getStats();
+		if (stats.isEmpty()) {
+			terminalPrinter.println("No requests have been sent.");
+			return;
+		}
+		terminalPrinter.println(String.format(Locale.ROOT, STATS_FORMAT, "model", "requests", "first token",
+				"tokens/s", "errors"));
+		stats.forEach((model, modelStats) -> terminalPrinter.println(String.format(Locale.ROOT, STATS_FORMAT,
+				ModelNames.name(model), modelStats.requests(), format(modelStats.firstTokenMillis(), " ms"),
+				format(modelStats.tokensPerSecond(), ""), Math.round(modelStats.errorRate() * 100) + "%")));
+	}
+
+	private static String format(double value, String unit) {
+		return Double.isNaN(value) ? "-" : Math.round(value) + unit;
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.shahabkondri.chatgpt.shell.command;
+
+import com.shahabkondri.chatgpt.shell.configuration.MetricsProperties;
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import com.shahabkondri.chatgpt.shell.shell.TerminalPrinter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ShellComponent} that displays the metrics of the chat pipeline recorded by
+ * {@link ChatMetrics} since the shell was started, such as the time to first token, the
+ * token rate of streamed replies, the time spent writing to the database and the
+ * connections of the HTTP client.
+ *
+ * @author Shahab Kondri
+ */
+@ShellComponent
+public class StatsCommand {
+
+	private final ChatMetrics chatMetrics;
+
+	private final TerminalPrinter terminalPrinter;
+
+	/**
+	 * Constructs a new StatsCommand.
+	 * @param chatMetrics The metrics of the chat pipeline.
+	 * @param terminalPrinter The terminal printer for printing the metrics.
+	 */
+	public StatsCommand(ChatMetrics chatMetrics, TerminalPrinter terminalPrinter) {
+		this.chatMetrics = chatMetrics;
+		this.terminalPrinter = terminalPrinter;
+	}
+
+	/**
+	 * Displays the chat metrics, one line per meter, or all metrics in the given format.
+	 * <p>
+	 * example: <pre>
+	 * :> :stats
+	 * :> :stats --format prometheus
+	 * </pre>
+	 * @param format The format of the metrics: {@code text}, {@code json} or
+	 * {@code prometheus}.
+	 */
+	@ShellMethod(key = "stats", value = "Displays latency and error metrics of the chat pipeline.")
+	public void stats(@ShellOption(defaultValue = "text") String format) {
+		if (!"text".equalsIgnoreCase(format)) {
+			try {
+				MetricsProperties.Dump dump = MetricsProperties.Dump.valueOf(format.toUpperCase(Locale.ROOT));
+				terminalPrinter.println(chatMetrics.scrape(dump));
+			}
+			catch (IllegalArgumentException ex) {
+				terminalPrinter.println("Unknown format: " + format + ". Use text, json or prometheus.");
+			}
+			return;
+		}
+
+		List<Meter> meters = chatMetrics.getMeters();
+		if (meters.isEmpty()) {
+			terminalPrinter.println("No metrics have been recorded.");
+			return;
+		}
+		for (Meter meter : meters) {
+			terminalPrinter.println(name(meter) + " | " + describe(meter));
+		}
+	}
+
+	private static String name(Meter meter) {
+		List<Tag> tags = meter.getId().getTags();
+		if (tags.isEmpty()) {
+			return meter.getId().getName();
+		}
+		return meter.getId().getName() + tags.stream().map(tag -> tag.getKey() + "=" + tag.getValue())
+				.collect(Collectors.joining(",", "{", "}"));
+	}
+
+	private static String describe(Meter meter) {
+		if (meter instanceof Timer timer) {
+			HistogramSnapshot snapshot = timer.takeSnapshot();
+			StringBuilder builder = new StringBuilder("count: " + snapshot.count() + " | mean: "
+					+ millis(snapshot.mean(TimeUnit.MILLISECONDS)));
+			for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+				builder.append(" | p").append(Math.round(percentile.percentile() * 100)).append(": ")
+						.append(millis(percentile.value(TimeUnit.MILLISECONDS)));
+			}
+			return builder.append(" | max: ").append(millis(snapshot.max(TimeUnit.MILLISECONDS))).toString();
+		}
+		if (meter instanceof DistributionSummary summary) {
+			HistogramSnapshot snapshot = summary.takeSnapshot();
+			String unit = (summary.getId().getBaseUnit() != null) ? " " + summary.getId().getBaseUnit() : "";
+			StringBuilder builder = new StringBuilder(
+					"count: " + snapshot.count() + " | mean: " + decimal(snapshot.mean()) + unit);
+			for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+				builder.append(" | p").append(Math.round(percentile.percentile() * 100)).append(": ")
+						.append(decimal(percentile.value())).append(unit);
+			}
+			return builder.append(" | max: ").append(decimal(snapshot.max())).append(unit).toString();
+		}
+		if (meter instanceof Gauge gauge) {
+			return "value: " + Math.round(gauge.value());
+		}
+		return "count: " + Math.round(((Counter) meter).count());
+	}
+
+	private static String millis(double millis) {
+		return Math.round(millis) + " ms";
+	}
+
+	private static String decimal(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import java.time.Duration;
+
+/**
+ * A circuit breaker for the requests to one text completion model. After the configured
+ * number of consecutive failed requests, the circuit opens and requests fail fast for the
+ * configured duration. Then a single trial request is let through: if it succeeds, the
+ * circuit closes again, otherwise it opens for another period.
+ *
+ * @author Shahab Kondri
+ */
+class CircuitBreaker {
+
+	private final int failureThreshold;
+
+	private final long openNanos;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	private boolean open;
+
+	private boolean trialInFlight;
+
+	/**
+	 * Constructs a new, closed CircuitBreaker.
+	 * @param failureThreshold The number of consecutive failures that opens the circuit.
+	 * @param openDuration How long the circuit stays open before a trial request.
+	 */
+	CircuitBreaker(int failureThreshold, Duration openDuration) {
+		this.failureThreshold = Math.max(failureThreshold, 1);
+		this.openNanos = openDuration.toNanos();
+	}
+
+	/**
+	 * Checks whether a request may be sent. While the circuit is open, only one trial
+	 * request is let through once the open duration has elapsed.
+	 * @return True if the request may be sent, false if it should fail fast.
+	 */
+	synchronized boolean tryAcquire() {
+		if (!open) {
+			return true;
+		}
+		if (trialInFlight || System.nanoTime() - openedAt < openNanos) {
+			return false;
+		}
+		trialInFlight = true;
+		return true;
+	}
+
+	/**
+	 * Records a request that succeeded, which closes the circuit.
+	 */
+	synchronized void onSuccess() {
+		consecutiveFailures = 0;
+		open = false;
+		trialInFlight = false;
+	}
+
+	/**
+	 * Records a request that failed with a transient error, which opens the circuit once
+	 * the failure threshold is reached, or again if it was the trial request.
+	 */
+	synchronized void onFailure() {
+		consecutiveFailures++;
+		if (trialInFlight || consecutiveFailures >= failureThreshold) {
+			open = true;
+			openedAt = System.nanoTime();
+		}
+		trialInFlight = false;
+	}
+
+	/**
+	 * Records a request that ended without telling whether the model is healthy, such as
+	 * a cancelled request or one that was rejected as invalid, so that another trial
+	 * request may be sent.
+	 */
+	synchronized void onAbandoned() {
+		trialInFlight = false;
+	}
+
+	/**
+	 * Returns how long the circuit stays open before the next trial request.
+	 * @return The remaining open duration, zero if the circuit is closed.
+	 */
+	synchronized Duration remaining() {
+		if (!open) {
+			return Duration.ZERO;
+		}
+		return Duration.ofNanos(Math.max(openNanos - (System.nanoTime() - openedAt), 0));
+	}
+
+}
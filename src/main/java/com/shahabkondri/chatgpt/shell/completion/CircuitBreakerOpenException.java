@@ -0,0 +1,46 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is not sent because the requests to its model failed repeatedly
+ * and the {@link CircuitBreaker} of the model is open.
+ *
+ * @author Shahab Kondri
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+	private final TextCompletionModel model;
+
+	private final Duration retryAfter;
+
+	/**
+	 * Constructs a new CircuitBreakerOpenException.
+	 * @param model The model whose requests fail fast.
+	 * @param retryAfter How long until the next request to the model is let through.
+	 */
+	public CircuitBreakerOpenException(TextCompletionModel model, Duration retryAfter) {
+		super("Requests to " + model + " are paused after repeated failures");
+		this.model = model;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * Returns the model whose requests fail fast.
+	 * @return The model.
+	 */
+	public TextCompletionModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns how long until the next request to the model is let through.
+	 * @return The remaining time the circuit stays open.
+	 */
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+
+}
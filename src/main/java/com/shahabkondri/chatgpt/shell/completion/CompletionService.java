@@ -0,0 +1,309 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.shahabkondri.chatgpt.api.client.ChatGptClient;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.configuration.RetryProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Sends chat requests through the {@link ChatGptClient}, or the {@link DeltaStreamClient}
+ * if the lean decoder is enabled, and exposes the content of the AI-generated response,
+ * either as a stream of deltas or as a whole. This is the single place where the shell
+ * talks to the ChatGPT API. When the {@link ResponseCache} is enabled, responses to
+ * requests that have been answered before are replayed from the cache instead.
+ * <p>
+ * Requests that fail with a transient error, such as HTTP 429, a server error or a
+ * connection failure, are retried with a jittered exponential backoff, or after the delay
+ * the API asks for with {@code Retry-After}, as long as no part of the response has been
+ * received. A {@link CircuitBreaker} per model makes requests to a model that keeps
+ * failing fail fast, and requests that are throttled or rejected by the circuit breaker
+ * are sent to the fallback model, if one is configured. Callers that need to know which
+ * model answered can be notified when the fallback model is used, and answers of the
+ * fallback model are not cached.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class CompletionService {
+
+	private final ChatGptClient chatGptClient;
+
+	private final DeltaStreamClient deltaStreamClient;
+
+	private final ResponseCache responseCache;
+
+	private final Scheduler blockingScheduler;
+
+	private final RetryProperties retryProperties;
+
+	private final Map<TextCompletionModel, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs a new CompletionService.
+	 * @param chatGptClient The ChatGPT client for interacting with the API.
+	 * @param deltaStreamClient The client that streams deltas with the lean decoder.
+	 * @param responseCache The cache of previous responses.
+	 * @param blockingScheduler The scheduler that reads and writes the cache.
+	 * @param retryProperties The properties that control retries, the circuit breakers
+	 * and the fallback model.
+	 */
+	public CompletionService(ChatGptClient chatGptClient, DeltaStreamClient deltaStreamClient,
+			ResponseCache responseCache, Scheduler blockingScheduler, RetryProperties retryProperties) {
+		this.chatGptClient = chatGptClient;
+		this.deltaStreamClient = deltaStreamClient;
+		this.responseCache = responseCache;
+		this.blockingScheduler = blockingScheduler;
+		this.retryProperties = retryProperties;
+	}
+
+	/**
+	 * Sends the given request and streams the content deltas of the response. Chunks
+	 * without content, such as the role announcement, are skipped. If the response is
+	 * cached, it is replayed as a single delta without sending the request; otherwise a
+	 * response that completes is added to the cache.
+	 * @param request The request to send.
+	 * @return A {@link Flux} of content deltas, in the order they are received.
+	 */
+	public Flux<String> stream(ChatGptRequest request) {
+		return stream(request, true);
+	}
+
+	/**
+	 * Sends the given request and streams the content deltas of the response, like
+	 * {@link #stream(ChatGptRequest)}, optionally without falling back to another model,
+	 * for when the answer must come from the requested model.
+	 * @param request The request to send.
+	 * @param fallback Whether the request may be sent to the fallback model.
+	 * @return A {@link Flux} of content deltas, in the order they are received.
+	 */
+	public Flux<String> stream(ChatGptRequest request, boolean fallback) {
+		return stream(request, fallback, fallbackModel -> {
+		});
+	}
+
+	/**
+	 * Sends the given request and streams the content deltas of the response, like
+	 * {@link #stream(ChatGptRequest, boolean)}, and tells the caller if the request is
+	 * sent to the fallback model, so that the answer is attributed to the model that
+	 * generated it.
+	 * @param request The request to send.
+	 * @param fallback Whether the request may be sent to the fallback model.
+	 * @param onFallback Called with the fallback model when the request is sent to it,
+	 * before any delta of its answer.
+	 * @return A {@link Flux} of content deltas, in the order they are received.
+	 */
+	public Flux<String> stream(ChatGptRequest request, boolean fallback,
+			Consumer<TextCompletionModel> onFallback) {
+		if (!responseCache.isEnabled()) {
+			return fetch(request, fallback, onFallback);
+		}
+
+		String key = responseCache.key(request);
+		Mono<String> cached = Mono.fromCallable(() -> responseCache.get(key).orElse(null))
+				.subscribeOn(blockingScheduler);
+		return cached.flux().switchIfEmpty(Flux.defer(() -> fetchAndCache(request, key, fallback, onFallback)));
+	}
+
+	/**
+	 * Sends the given request and caches the answer once it is complete, unless it was
+	 * generated by the fallback model, as the cache key names the requested model.
+	 * @param request The request to send.
+	 * @param key The cache key of the request.
+	 * @param fallback Whether the request may be sent to the fallback model.
+	 * @param onFallback Called with the fallback model when the request is sent to it.
+	 * @return A {@link Flux} of content deltas.
+	 */
+	private Flux<String> fetchAndCache(ChatGptRequest request, String key, boolean fallback,
+			Consumer<TextCompletionModel> onFallback) {
+		StringBuilder builder = new StringBuilder();
+		AtomicBoolean fellBack = new AtomicBoolean(false);
+		return fetch(request, fallback, fallbackModel -> {
+			fellBack.set(true);
+			onFallback.accept(fallbackModel);
+		}).doOnNext(builder::append).doOnComplete(() -> {
+			if (!fellBack.get()) {
+				blockingScheduler.schedule(() -> responseCache.put(key, builder.toString()));
+			}
+		});
+	}
+
+	/**
+	 * Sends the given request, and sends it again to the fallback model if allowed and it
+	 * is throttled or its model is failing before any part of the response is received.
+	 * @param request The request to send.
+	 * @param fallback Whether the request may be sent to the fallback model.
+	 * @param onFallback Called with the fallback model when the request is sent to it.
+	 * @return A {@link Flux} of content deltas.
+	 */
+	private Flux<String> fetch(ChatGptRequest request, boolean fallback, Consumer<TextCompletionModel> onFallback) {
+		return Flux.defer(() -> {
+			AtomicBoolean received = new AtomicBoolean(false);
+			return attempt(request, received).onErrorResume(
+					throwable -> fallback && !received.get() && shouldFallBack(request, throwable), throwable -> {
+						TextCompletionModel fallbackModel = retryProperties.fallbackModel();
+						onFallback.accept(fallbackModel);
+						return attempt(new ChatGptRequest(fallbackModel, request.messages()), received);
+					});
+		});
+	}
+
+	/**
+	 * Sends the given request through the circuit breaker of its model and retries it
+	 * while it fails with transient errors and no part of the response has been received.
+	 * @param request The request to send.
+	 * @param received Set once the first delta of the response is received.
+	 * @return A {@link Flux} of content deltas.
+	 */
+	private Flux<String> attempt(ChatGptRequest request, AtomicBoolean received) {
+		CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(request.model(),
+				model -> new CircuitBreaker(retryProperties.failureThreshold(), retryProperties.openDuration()));
+		return Flux.defer(() -> {
+			if (!circuitBreaker.tryAcquire()) {
+				return Flux.error(new CircuitBreakerOpenException(request.model(), circuitBreaker.remaining()));
+			}
+			return deltas(request).doOnNext(content -> {
+				if (received.compareAndSet(false, true)) {
+					circuitBreaker.onSuccess();
+				}
+			}).retryWhen(Retry.from(signals -> signals.concatMap(signal -> retryDelay(signal, received))))
+					.doOnComplete(circuitBreaker::onSuccess).doOnError(throwable -> {
+						if (!received.get() && isTransient(throwable)) {
+							circuitBreaker.onFailure();
+						}
+						else {
+							circuitBreaker.onAbandoned();
+						}
+					}).doOnCancel(circuitBreaker::onAbandoned);
+		});
+	}
+
+	/**
+	 * Sends the given request once and streams the content deltas of the response,
+	 * through the lean decoder if it is enabled.
+	 * @param request The request to send.
+	 * @return A {@link Flux} of content deltas.
+	 */
+	private Flux<String> deltas(ChatGptRequest request) {
+		if (deltaStreamClient.isEnabled()) {
+			return deltaStreamClient.completions(request);
+		}
+		return Flux.defer(() -> chatGptClient.completions(request))
+				.mapNotNull(response -> response.choices().get(0).delta().content());
+	}
+
+	/**
+	 * Decides whether and when a failed request is retried. A request is retried if it
+	 * failed with a transient error before any part of the response was received, it has
+	 * attempts left, and the delay asked for by the API, if any, does not exceed the
+	 * maximum backoff.
+	 * @param signal The failure of the latest attempt.
+	 * @param received Whether a part of the response has been received.
+	 * @return A {@link Mono} that emits after the retry delay, or fails with the error of
+	 * the latest attempt if the request is not retried.
+	 */
+	private Mono<Long> retryDelay(Retry.RetrySignal signal, AtomicBoolean received) {
+		Throwable failure = signal.failure();
+		if (received.get() || !isTransient(failure) || signal.totalRetries() + 1 >= retryProperties.maxAttempts()) {
+			return Mono.error(failure);
+		}
+		Duration delay = retryAfter(failure).orElseGet(() -> backoff(signal.totalRetries()));
+		if (delay.compareTo(retryProperties.maxBackoff()) > 0) {
+			return Mono.error(failure);
+		}
+		return Mono.delay(delay);
+	}
+
+	/**
+	 * Computes the jittered exponential backoff before the given retry.
+	 * @param retry The number of retries so far, starting at 0.
+	 * @return The delay before the retry, at most the maximum backoff.
+	 */
+	private Duration backoff(long retry) {
+		long initial = retryProperties.initialBackoff().toMillis();
+		long max = retryProperties.maxBackoff().toMillis();
+		long backoff = Math.min(initial << Math.min(retry, 30), max);
+		long jitter = (long) (backoff * retryProperties.jitter() * ThreadLocalRandom.current().nextDouble());
+		return Duration.ofMillis(backoff - jitter);
+	}
+
+	private boolean shouldFallBack(ChatGptRequest request, Throwable throwable) {
+		TextCompletionModel fallbackModel = retryProperties.fallbackModel();
+		return fallbackModel != null && fallbackModel != request.model()
+				&& (throwable instanceof WebClientResponseException.TooManyRequests
+						|| throwable instanceof CircuitBreakerOpenException);
+	}
+
+	/**
+	 * Checks whether the given error is transient, that is whether the same request may
+	 * succeed if it is sent again: HTTP 429, server errors and failures to connect or to
+	 * read the response.
+	 * @param throwable The error of a request.
+	 * @return True if the request may be retried.
+	 */
+	static boolean isTransient(Throwable throwable) {
+		if (throwable instanceof WebClientResponseException ex) {
+			return ex.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()
+					|| ex.getStatusCode().is5xxServerError();
+		}
+		return throwable instanceof WebClientRequestException;
+	}
+
+	/**
+	 * Reads the delay asked for by the {@code Retry-After} header of an error response,
+	 * given either in seconds or as an HTTP date.
+	 * @param throwable The error of a request.
+	 * @return The delay, or an empty Optional if the error has no valid header.
+	 */
+	static Optional<Duration> retryAfter(Throwable throwable) {
+		if (!(throwable instanceof WebClientResponseException responseException)) {
+			return Optional.empty();
+		}
+		String retryAfter = responseException.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+		if (retryAfter == null || retryAfter.isBlank()) {
+			return Optional.empty();
+		}
+		retryAfter = retryAfter.strip();
+		if (retryAfter.length() < 10 && retryAfter.chars().allMatch(Character::isDigit)) {
+			return Optional.of(Duration.ofSeconds(Long.parseLong(retryAfter)));
+		}
+		try {
+			Duration delay = Duration.between(ZonedDateTime.now(),
+					ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME));
+			return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+		}
+		catch (DateTimeParseException ex) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Sends the given request and collects the whole content of the response.
+	 * @param request The request to send.
+	 * @return A {@link Mono} of the response content.
+	 */
+	public Mono<String> complete(ChatGptRequest request) {
+		return stream(request).collect(Collectors.joining());
+	}
+
+}
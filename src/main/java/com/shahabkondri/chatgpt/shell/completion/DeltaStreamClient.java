@@ -0,0 +1,86 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Streams the content deltas of chat completions by reading the raw bytes of the response
+ * and decoding them with an {@link SseDeltaDecoder}, instead of decoding every chunk into
+ * the response objects of the ChatGPT client only to read one field of them. The request
+ * is sent through a web client built from the same builder, and thus the same connector
+ * and connection pool, as the ChatGPT client, and errors surface as the same
+ * {@code WebClientResponseException}s, so that retries and the circuit breakers of the
+ * {@link CompletionService} treat both paths alike.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class DeltaStreamClient {
+
+	private final ChatGptProperties.Stream streamProperties;
+
+	private final ObjectMapper objectMapper;
+
+	private final WebClient webClient;
+
+	/**
+	 * Constructs a new DeltaStreamClient.
+	 * @param chatGptProperties The properties that define how responses are streamed.
+	 * @param webClientBuilder The builder of the web client that sends the requests.
+	 * @param objectMapper The object mapper that serializes requests.
+	 * @param apiKey The API key sent with the requests.
+	 */
+	public DeltaStreamClient(ChatGptProperties chatGptProperties, WebClient.Builder webClientBuilder,
+			ObjectMapper objectMapper, @Value("${openai.api-key:}") String apiKey) {
+		this.streamProperties = chatGptProperties.stream();
+		this.objectMapper = objectMapper;
+		this.webClient = webClientBuilder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey).build();
+	}
+
+	/**
+	 * Returns whether the lean decoder is enabled.
+	 * @return True if responses are streamed through this client.
+	 */
+	public boolean isEnabled() {
+		return streamProperties.leanDecoder();
+	}
+
+	/**
+	 * Sends the given request and streams the content deltas of the response. Chunks
+	 * without content, such as the role announcement, are skipped.
+	 * @param request The request to send.
+	 * @return A {@link Flux} of content deltas, in the order they are received.
+	 */
+	public Flux<String> completions(ChatGptRequest request) {
+		return Flux.defer(() -> {
+			ObjectNode body = objectMapper.valueToTree(request);
+			body.put("stream", true);
+			SseDeltaDecoder decoder = new SseDeltaDecoder();
+			return webClient.post().uri(streamProperties.completionsUrl()).contentType(MediaType.APPLICATION_JSON)
+					.accept(MediaType.TEXT_EVENT_STREAM).bodyValue(body).retrieve().bodyToFlux(DataBuffer.class)
+					.concatMapIterable(buffer -> decode(decoder, buffer));
+		});
+	}
+
+	private static List<String> decode(SseDeltaDecoder decoder, DataBuffer buffer) {
+		try {
+			return decoder.decode(buffer);
+		}
+		finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Parses the names of {@link TextCompletionModel text completion models} given on the
+ * command line. Names are matched regardless of case, and dashes and dots may be used
+ * instead of underscores, so that {@code gpt-3.5-turbo}, {@code gpt_3_5_turbo} and
+ * {@code GPT_3_5_TURBO} all name the same model.
+ *
+ * @author Shahab Kondri
+ */
+public final class ModelNames {
+
+	private ModelNames() {
+	}
+
+	/**
+	 * Parses a single model name.
+	 * @param name The name of the model.
+	 * @return The model.
+	 * @throws IllegalArgumentException If no model has the given name.
+	 */
+	public static TextCompletionModel parse(String name) {
+		String constant = name.strip().toUpperCase(Locale.ROOT).replace('-', '_').replace('.', '_');
+		try {
+			return TextCompletionModel.valueOf(constant);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Unknown model: " + name + ". Use one of " + names() + ".");
+		}
+	}
+
+	/**
+	 * Parses a comma-separated list of model names. Blank entries and duplicates are
+	 * ignored.
+	 * @param names The comma-separated names of the models.
+	 * @return The models, in the order they are named.
+	 * @throws IllegalArgumentException If a name does not name a model, or no model is
+	 * named.
+	 */
+	public static List<TextCompletionModel> parseList(String names) {
+		List<TextCompletionModel> models = Arrays.stream(names.split(",")).filter(name -> !name.isBlank())
+				.map(ModelNames::parse).distinct().toList();
+		if (models.isEmpty()) {
+			throw new IllegalArgumentException("No model given. Use one or more of " + names() + ".");
+		}
+		return models;
+	}
+
+	/**
+	 * Returns the name of a model as displayed by the shell.
+	 * @param model The model.
+	 * @return The lowercase name of the model, as accepted by {@link #parse(String)}.
+	 */
+	public static String name(TextCompletionModel model) {
+		return model.name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the names of all models, as accepted by {@link #parse(String)}.
+	 * @return The comma-separated lowercase names of all models.
+	 */
+	public static String names() {
+		return Arrays.stream(TextCompletionModel.values()).map(ModelNames::name).collect(Collectors.joining(", "));
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.configuration.RoutingProperties;
+import com.shahabkondri.chatgpt.shell.session.TokenCounter;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the active text completion model of the shell, which starts as the configured
+ * model and can be switched at runtime, and keeps rolling statistics of every model that
+ * was used: the time to first token, the token rate and the error rate, each as an
+ * exponentially weighted moving average so that recent turns weigh the most. Based on
+ * these, short prompts are routed to the configured fast model if routing is enabled, or
+ * switching to it is suggested otherwise.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class ModelSelector {
+
+	/**
+	 * The weight of the latest sample in the moving averages.
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	private final AtomicReference<TextCompletionModel> activeModel;
+
+	private final Map<TextCompletionModel, ModelStats> stats = new ConcurrentHashMap<>();
+
+	private final RoutingProperties routingProperties;
+
+	private final TokenCounter tokenCounter;
+
+	/**
+	 * Constructs a new ModelSelector.
+	 * @param chatGptProperties The properties that define the model active at startup.
+	 * @param routingProperties The properties that control the routing of short prompts.
+	 * @param tokenCounter The token counter for measuring prompts.
+	 */
+	public ModelSelector(ChatGptProperties chatGptProperties, RoutingProperties routingProperties,
+			TokenCounter tokenCounter) {
+		this.activeModel = new AtomicReference<>(chatGptProperties.model());
+		this.routingProperties = routingProperties;
+		this.tokenCounter = tokenCounter;
+	}
+
+	/**
+	 * Returns the active model.
+	 * @return The model that prompts are sent to, unless they are routed.
+	 */
+	public TextCompletionModel getActiveModel() {
+		return activeModel.get();
+	}
+
+	/**
+	 * Switches the active model.
+	 * @param model The model to send prompts to from now on.
+	 * @return The previously active model.
+	 */
+	public TextCompletionModel setActiveModel(TextCompletionModel model) {
+		return activeModel.getAndSet(model);
+	}
+
+	/**
+	 * Selects the model for a prompt: the fast model if routing is enabled, the prompt is
+	 * short and the fast model has not been failing recently, the active model otherwise.
+	 * @param prompt The user message.
+	 * @return The model to send the prompt to.
+	 */
+	public TextCompletionModel select(String prompt) {
+		TextCompletionModel active = activeModel.get();
+		if (!routingProperties.enabled() || !isShort(prompt) || !isHealthy(routingProperties.fastModel())) {
+			return active;
+		}
+		return routingProperties.fastModel();
+	}
+
+	/**
+	 * Suggests the fast model for a short prompt if routing is disabled and the fast
+	 * model has been answering sooner than the active model.
+	 * @param prompt The user message.
+	 * @return The fast model, or empty if there is nothing to suggest.
+	 */
+	public Optional<TextCompletionModel> suggest(String prompt) {
+		TextCompletionModel active = activeModel.get();
+		TextCompletionModel fast = routingProperties.fastModel();
+		if (routingProperties.enabled() || active == fast || !isShort(prompt) || !isHealthy(fast)) {
+			return Optional.empty();
+		}
+		ModelStats activeStats = stats.get(active);
+		ModelStats fastStats = stats.get(fast);
+		if (activeStats == null || fastStats == null || Double.isNaN(activeStats.firstTokenMillis())
+				|| Double.isNaN(fastStats.firstTokenMillis())
+				|| fastStats.firstTokenMillis() >= activeStats.firstTokenMillis()) {
+			return Optional.empty();
+		}
+		return Optional.of(fast);
+	}
+
+	/**
+	 * Records a request that was answered.
+	 * @param model The model that was asked.
+	 * @param firstTokenNanos The time to the first delta, in nanoseconds.
+	 * @param streamNanos The time from the first delta to the end of the answer, in
+	 * nanoseconds.
+	 * @param tokens The number of tokens of the answer.
+	 */
+	public void recordSuccess(TextCompletionModel model, long firstTokenNanos, long streamNanos, int tokens) {
+		double firstTokenMillis = firstTokenNanos / 1e6;
+		double tokensPerSecond = (streamNanos > 0 && tokens > 0) ? tokens / (streamNanos / 1e9) : Double.NaN;
+		stats.compute(model, (key, current) -> (current == null)
+				? new ModelStats(1, firstTokenMillis, tokensPerSecond, 0)
+				: new ModelStats(current.requests() + 1, average(current.firstTokenMillis(), firstTokenMillis),
+						average(current.tokensPerSecond(), tokensPerSecond), average(current.errorRate(), 0)));
+	}
+
+	/**
+	 * Records a request that failed.
+	 * @param model The model that was asked.
+	 */
+	public void recordFailure(TextCompletionModel model) {
+		stats.compute(model, (key, current) -> (current == null) ? new ModelStats(1, Double.NaN, Double.NaN, 1)
+				: new ModelStats(current.requests() + 1, current.firstTokenMillis(), current.tokensPerSecond(),
+						average(current.errorRate(), 1)));
+	}
+
+	/**
+	 * Returns the statistics of the models that were used since the shell was started.
+	 * @return The statistics by model, in the order of the models.
+	 */
+	public Map<TextCompletionModel, ModelStats> getStats() {
+		Map<TextCompletionModel, ModelStats> snapshot = new EnumMap<>(TextCompletionModel.class);
+		snapshot.putAll(stats);
+		return snapshot;
+	}
+
+	private boolean isShort(String prompt) {
+		return tokenCounter.count(prompt) <= routingProperties.shortPromptTokens();
+	}
+
+	private boolean isHealthy(TextCompletionModel model) {
+		ModelStats modelStats = stats.get(model);
+		return modelStats == null || modelStats.errorRate() <= routingProperties.maxErrorRate();
+	}
+
+	private static double average(double current, double sample) {
+		if (Double.isNaN(sample)) {
+			return current;
+		}
+		if (Double.isNaN(current)) {
+			return sample;
+		}
+		return current + SMOOTHING * (sample - current);
+	}
+
+	/**
+	 * The rolling statistics of a model.
+	 * @param requests The number of requests sent to the model.
+	 * @param firstTokenMillis The moving average of the time to first token, in
+	 * milliseconds, or {@code NaN} if no request was answered.
+	 * @param tokensPerSecond The moving average of the token rate of answers, or
+	 * {@code NaN} if no request was answered.
+	 * @param errorRate The moving average of the fraction of failed requests, between 0
+	 * and 1.
+	 */
+	public record ModelStats(long requests, double firstTokenMillis, double tokensPerSecond, double errorRate) {
+	}
+
+}
@@ -0,0 +1,218 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.shell.configuration.CacheProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A local cache of AI-generated responses, keyed by a hash of the whole
+ * {@link ChatGptRequest}, that is its model and all of its messages. Responses are stored
+ * as files in the configured directory, with a least-recently-used cache in memory in
+ * front of them. Cached responses expire after the configured time to live. The keys of
+ * the files on disk are indexed in memory, oldest first, so that the oldest files are
+ * removed when there are too many without listing the directory on every write; the index
+ * is loaded from the directory on the first write. All methods perform blocking I/O and
+ * must not be called from an event loop.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class ResponseCache {
+
+	private static final String FILE_EXTENSION = ".txt";
+
+	private final CacheProperties cacheProperties;
+
+	private final ObjectMapper objectMapper;
+
+	private final Map<String, CachedResponse> memoryCache;
+
+	private final Object diskIndexMonitor = new Object();
+
+	private LinkedHashSet<String> diskIndex;
+
+	/**
+	 * Constructs a new ResponseCache.
+	 * @param cacheProperties The properties of the cache.
+	 * @param objectMapper The object mapper used to serialize requests for hashing.
+	 */
+	public ResponseCache(CacheProperties cacheProperties, ObjectMapper objectMapper) {
+		this.cacheProperties = cacheProperties;
+		this.objectMapper = objectMapper;
+		this.memoryCache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				return size() > cacheProperties.memorySize();
+			}
+		};
+	}
+
+	/**
+	 * Returns whether the cache is enabled.
+	 * @return True if responses are cached, false otherwise.
+	 */
+	public boolean isEnabled() {
+		return cacheProperties.enabled();
+	}
+
+	/**
+	 * Computes the cache key of the given request, a SHA-256 hash of its JSON form.
+	 * @param request The request to compute the key for.
+	 * @return The hexadecimal cache key.
+	 */
+	public String key(ChatGptRequest request) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+		}
+		catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("Could not compute the cache key", ex);
+		}
+	}
+
+	/**
+	 * Returns the cached response for the given key, looking in memory first and on disk
+	 * second.
+	 * @param key The cache key of the request.
+	 * @return An Optional containing the response if it is cached and has not expired,
+	 * otherwise an empty Optional.
+	 */
+	public Optional<String> get(String key) {
+		Instant expiredBefore = Instant.now().minus(cacheProperties.ttl());
+		synchronized (memoryCache) {
+			CachedResponse cached = memoryCache.get(key);
+			if (cached != null && cached.createdAt().isAfter(expiredBefore)) {
+				return Optional.of(cached.content());
+			}
+		}
+
+		Path file = file(key);
+		try {
+			Instant createdAt = Files.getLastModifiedTime(file).toInstant();
+			if (createdAt.isBefore(expiredBefore)) {
+				Files.deleteIfExists(file);
+				synchronized (diskIndexMonitor) {
+					if (diskIndex != null) {
+						diskIndex.remove(key);
+					}
+				}
+				return Optional.empty();
+			}
+			String content = Files.readString(file, StandardCharsets.UTF_8);
+			remember(key, new CachedResponse(content, createdAt));
+			return Optional.of(content);
+		}
+		catch (IOException ex) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Caches the response for the given key in memory and on disk. If more responses than
+	 * configured are stored on disk, the oldest ones are removed.
+	 * @param key The cache key of the request.
+	 * @param content The whole content of the response.
+	 */
+	public void put(String key, String content) {
+		Instant now = Instant.now();
+		remember(key, new CachedResponse(content, now));
+		try {
+			Files.createDirectories(cacheProperties.directory());
+			Path temporaryFile = Files.createTempFile(cacheProperties.directory(), key, ".tmp");
+			Files.writeString(temporaryFile, content, StandardCharsets.UTF_8);
+			Files.setLastModifiedTime(temporaryFile, FileTime.from(now));
+			Files.move(temporaryFile, file(key), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			evictOldestFiles(key);
+		}
+		catch (IOException ex) {
+			// The response stays cached in memory only
+		}
+	}
+
+	private void remember(String key, CachedResponse response) {
+		synchronized (memoryCache) {
+			memoryCache.put(key, response);
+		}
+	}
+
+	/**
+	 * Records the file just written for the given key as the newest one and removes the
+	 * oldest files while more than the configured number are stored.
+	 * @param key The cache key of the file just written.
+	 * @throws IOException If the index cannot be loaded or a file cannot be removed.
+	 */
+	private void evictOldestFiles(String key) throws IOException {
+		List<String> evictedKeys = new ArrayList<>();
+		synchronized (diskIndexMonitor) {
+			if (diskIndex == null) {
+				diskIndex = loadDiskIndex();
+			}
+			diskIndex.remove(key);
+			diskIndex.add(key);
+			Iterator<String> oldestKeys = diskIndex.iterator();
+			while (diskIndex.size() > cacheProperties.diskSize() && oldestKeys.hasNext()) {
+				evictedKeys.add(oldestKeys.next());
+				oldestKeys.remove();
+			}
+		}
+		for (String evictedKey : evictedKeys) {
+			Files.deleteIfExists(file(evictedKey));
+		}
+	}
+
+	private LinkedHashSet<String> loadDiskIndex() throws IOException {
+		try (Stream<Path> stream = Files.list(cacheProperties.directory())) {
+			return stream.filter(path -> path.getFileName().toString().endsWith(FILE_EXTENSION))
+					.sorted(Comparator.comparing(ResponseCache::lastModified)).map(path -> {
+						String fileName = path.getFileName().toString();
+						return fileName.substring(0, fileName.length() - FILE_EXTENSION.length());
+					}).collect(Collectors.toCollection(LinkedHashSet::new));
+		}
+	}
+
+	private Path file(String key) {
+		return cacheProperties.directory().resolve(key + FILE_EXTENSION);
+	}
+
+	private static FileTime lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		}
+		catch (IOException ex) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	/**
+	 * A response held in the memory cache.
+	 * @param content The whole content of the response.
+	 * @param createdAt The time the response was cached.
+	 */
+	private record CachedResponse(String content, Instant createdAt) {
+	}
+
+}
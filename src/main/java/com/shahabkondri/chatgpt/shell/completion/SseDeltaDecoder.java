@@ -0,0 +1,266 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes the server-sent events of a streamed chat completion straight from the bytes of
+ * the response body, extracting only the content delta of each chunk. Instead of decoding
+ * the body into strings and every chunk into an object graph, the bytes of the current
+ * line are collected in a reusable buffer, the {@code "content"} field is located by a
+ * byte scan and its value is unescaped into a second reusable buffer, so that the only
+ * object allocated per chunk is the content string itself. Chunks without content, such
+ * as the role announcement or a {@code null} content, are skipped, and so are comments
+ * and fields other than {@code data}.
+ * <p>
+ * A decoder keeps the line that is cut off at the end of a network buffer until the next
+ * one arrives, so an instance decodes a single response and is not thread-safe.
+ *
+ * @author Shahab Kondri
+ */
+public final class SseDeltaDecoder {
+
+	private static final byte[] DATA_FIELD = "data:".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] CONTENT_KEY = "\"content\"".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+	private byte[] line = new byte[512];
+
+	private int lineLength;
+
+	private byte[] content = new byte[64];
+
+	private int contentLength;
+
+	private boolean done;
+
+	/**
+	 * Decodes a buffer of the response body. The buffer is read but not released.
+	 * @param buffer The next buffer of the response body.
+	 * @return The content deltas of the events completed by this buffer, in order.
+	 */
+	public List<String> decode(DataBuffer buffer) {
+		List<String> deltas = null;
+		for (int index = buffer.readPosition(); index < buffer.writePosition(); index++) {
+			deltas = accept(buffer.getByte(index), deltas);
+		}
+		return (deltas != null) ? deltas : List.of();
+	}
+
+	/**
+	 * Decodes bytes of the response body.
+	 * @param bytes The array holding the next bytes of the response body.
+	 * @param offset The index of the first byte to decode.
+	 * @param length The number of bytes to decode.
+	 * @return The content deltas of the events completed by these bytes, in order.
+	 */
+	public List<String> decode(byte[] bytes, int offset, int length) {
+		List<String> deltas = null;
+		for (int index = offset; index < offset + length; index++) {
+			deltas = accept(bytes[index], deltas);
+		}
+		return (deltas != null) ? deltas : List.of();
+	}
+
+	/**
+	 * Returns whether the terminating {@code [DONE]} event has been decoded.
+	 * @return True if the response is complete.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	private List<String> accept(byte b, List<String> deltas) {
+		if (b != '\n') {
+			if (b != '\r') {
+				if (lineLength == line.length) {
+					line = Arrays.copyOf(line, line.length * 2);
+				}
+				line[lineLength++] = b;
+			}
+			return deltas;
+		}
+		String delta = decodeLine();
+		lineLength = 0;
+		if (delta == null) {
+			return deltas;
+		}
+		List<String> result = (deltas != null) ? deltas : new ArrayList<>(2);
+		result.add(delta);
+		return result;
+	}
+
+	/**
+	 * Decodes the current line, if it is a data line.
+	 * @return The content delta of the line, or {@code null} if it has none.
+	 */
+	private String decodeLine() {
+		if (!startsWith(0, DATA_FIELD)) {
+			return null;
+		}
+		int start = DATA_FIELD.length;
+		if (start < lineLength && line[start] == ' ') {
+			start++;
+		}
+		if (lineLength - start == DONE.length && startsWith(start, DONE)) {
+			done = true;
+			return null;
+		}
+
+		int key = indexOf(CONTENT_KEY, start);
+		if (key < 0) {
+			return null;
+		}
+		int index = skipWhitespace(key + CONTENT_KEY.length);
+		if (index >= lineLength || line[index] != ':') {
+			throw malformed();
+		}
+		index = skipWhitespace(index + 1);
+		if (startsWith(index, NULL)) {
+			return null;
+		}
+		if (index >= lineLength || line[index] != '"') {
+			throw malformed();
+		}
+		return unescape(index + 1);
+	}
+
+	/**
+	 * Unescapes the JSON string starting at the given index of the line into the content
+	 * buffer.
+	 * @param start The index of the first byte after the opening quote.
+	 * @return The string.
+	 */
+	private String unescape(int start) {
+		contentLength = 0;
+		int index = start;
+		while (index < lineLength) {
+			byte b = line[index++];
+			if (b == '"') {
+				return (contentLength > 0) ? new String(content, 0, contentLength, StandardCharsets.UTF_8) : "";
+			}
+			if (b != '\\') {
+				append(b);
+				continue;
+			}
+			if (index >= lineLength) {
+				break;
+			}
+			byte escaped = line[index++];
+			switch (escaped) {
+				case '"', '\\', '/' -> append(escaped);
+				case 'n' -> append((byte) '\n');
+				case 't' -> append((byte) '\t');
+				case 'r' -> append((byte) '\r');
+				case 'b' -> append((byte) '\b');
+				case 'f' -> append((byte) '\f');
+				case 'u' -> {
+					int codePoint = hex(index);
+					index += 4;
+					if (Character.isHighSurrogate((char) codePoint) && index + 6 <= lineLength
+							&& line[index] == '\\' && line[index + 1] == 'u') {
+						int low = hex(index + 2);
+						if (Character.isLowSurrogate((char) low)) {
+							codePoint = Character.toCodePoint((char) codePoint, (char) low);
+							index += 6;
+						}
+					}
+					appendCodePoint(codePoint);
+				}
+				default -> throw malformed();
+			}
+		}
+		throw malformed();
+	}
+
+	private int hex(int start) {
+		if (start + 4 > lineLength) {
+			throw malformed();
+		}
+		int value = 0;
+		for (int index = start; index < start + 4; index++) {
+			int digit = Character.digit(line[index], 16);
+			if (digit < 0) {
+				throw malformed();
+			}
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	private void appendCodePoint(int codePoint) {
+		if (Character.isSurrogate((char) codePoint) && codePoint <= Character.MAX_VALUE) {
+			// A lone surrogate cannot be encoded, like String#getBytes
+			append((byte) '?');
+		}
+		else if (codePoint < 0x80) {
+			append((byte) codePoint);
+		}
+		else if (codePoint < 0x800) {
+			append((byte) (0xC0 | (codePoint >> 6)));
+			append((byte) (0x80 | (codePoint & 0x3F)));
+		}
+		else if (codePoint < 0x10000) {
+			append((byte) (0xE0 | (codePoint >> 12)));
+			append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			append((byte) (0x80 | (codePoint & 0x3F)));
+		}
+		else {
+			append((byte) (0xF0 | (codePoint >> 18)));
+			append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+			append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			append((byte) (0x80 | (codePoint & 0x3F)));
+		}
+	}
+
+	private void append(byte b) {
+		if (contentLength == content.length) {
+			content = Arrays.copyOf(content, content.length * 2);
+		}
+		content[contentLength++] = b;
+	}
+
+	private boolean startsWith(int start, byte[] prefix) {
+		if (start + prefix.length > lineLength) {
+			return false;
+		}
+		for (int index = 0; index < prefix.length; index++) {
+			if (line[start + index] != prefix[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int indexOf(byte[] target, int start) {
+		for (int index = start; index + target.length <= lineLength; index++) {
+			if (startsWith(index, target)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private int skipWhitespace(int start) {
+		int index = start;
+		while (index < lineLength && (line[index] == ' ' || line[index] == '\t')) {
+			index++;
+		}
+		return index;
+	}
+
+	private DecodingException malformed() {
+		return new DecodingException(
+				"Malformed chat completion chunk: " + new String(line, 0, lineLength, StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.shell.configuration.WarmPathProperties;
+import com.shahabkondri.chatgpt.shell.session.ContextWindow;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the path to the ChatGPT API warm between turns, if enabled, so that sending the
+ * next prompt only costs the request itself. The connection is opened when the shell
+ * starts and kept alive by a lightweight request whenever it has been idle for the
+ * configured ping interval; the ping goes through a web client built from the same
+ * builder, and thus the same connection pool, as the ChatGPT client. The JSON serializers
+ * of the request are initialized at startup, and after every turn the token counts of the
+ * history, which the {@link ContextWindow} needs to fit the next request, are computed in
+ * the background.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class WarmPath implements DisposableBean {
+
+	private final WarmPathProperties warmPathProperties;
+
+	private final ModelSelector modelSelector;
+
+	private final ContextWindow contextWindow;
+
+	private final Scheduler blockingScheduler;
+
+	private final WebClient webClient;
+
+	private final ScheduledFuture<?> pings;
+
+	private volatile long lastActivityNanos = System.nanoTime();
+
+	private volatile Disposable ping;
+
+	/**
+	 * Constructs a new WarmPath and, if it is enabled, opens the connection and schedules
+	 * the keep-alive pings.
+	 * @param warmPathProperties The properties of the warm path.
+	 * @param modelSelector The selector of the model the next request is prepared for.
+	 * @param contextWindow The context window whose token counts are prepared.
+	 * @param webClientBuilder The builder of the web client that pings the API.
+	 * @param objectMapper The object mapper that serializes requests.
+	 * @param shellScheduler The shared scheduler that runs the pings.
+	 * @param blockingScheduler The scheduler that prepares the next request.
+	 * @param apiKey The API key sent with the pings.
+	 */
+	public WarmPath(WarmPathProperties warmPathProperties, ModelSelector modelSelector,
+			ContextWindow contextWindow, WebClient.Builder webClientBuilder, ObjectMapper objectMapper,
+			ScheduledExecutorService shellScheduler, Scheduler blockingScheduler,
+			@Value("${openai.api-key:}") String apiKey) {
+		this.warmPathProperties = warmPathProperties;
+		this.modelSelector = modelSelector;
+		this.contextWindow = contextWindow;
+		this.blockingScheduler = blockingScheduler;
+		this.webClient = webClientBuilder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey).build();
+
+		if (!warmPathProperties.enabled()) {
+			this.pings = null;
+			return;
+		}
+		blockingScheduler.schedule(() -> initializeSerializers(objectMapper));
+		shellScheduler.execute(this::ping);
+		long interval = warmPathProperties.pingInterval().toNanos();
+		this.pings = shellScheduler.scheduleWithFixedDelay(this::pingIfIdle, interval, interval / 4,
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns whether the warm path is enabled.
+	 * @return True if the connection is kept alive between turns.
+	 */
+	public boolean isEnabled() {
+		return warmPathProperties.enabled();
+	}
+
+	/**
+	 * Records that a request is being sent, so that the connection is not pinged while it
+	 * is in use.
+	 */
+	public void markActive() {
+		lastActivityNanos = System.nanoTime();
+	}
+
+	/**
+	 * Prepares the next request in the background, after a turn has ended, by computing
+	 * the token counts of the history that the next request is fitted from. Counts are
+	 * cached per message, so that only the new user message is counted when the next
+	 * prompt is sent.
+	 * @param history The conversation history, including the latest answer.
+	 */
+	public void prepare(List<ChatGptRequest.Message> history) {
+		if (!warmPathProperties.enabled()) {
+			return;
+		}
+		markActive();
+		List<ChatGptRequest.Message> snapshot = List.copyOf(history);
+		blockingScheduler.schedule(() -> contextWindow.fit(modelSelector.getActiveModel(), snapshot));
+	}
+
+	/**
+	 * Pings the API if no request has been sent for the ping interval and no ping is in
+	 * flight. The response body is discarded and errors are ignored: the ping only keeps
+	 * the connection open.
+	 */
+	private void pingIfIdle() {
+		Disposable inFlight = ping;
+		if (System.nanoTime() - lastActivityNanos >= warmPathProperties.pingInterval().toNanos()
+				&& (inFlight == null || inFlight.isDisposed())) {
+			ping();
+		}
+	}
+
+	private void ping() {
+		markActive();
+		ping = webClient.get().uri(warmPathProperties.pingUrl()).retrieve().toBodilessEntity()
+				.onErrorResume(throwable -> Mono.empty()).subscribe();
+	}
+
+	/**
+	 * Serializes a request once, so that the serializers of the request and message types
+	 * are created and cached before the first prompt is sent.
+	 * @param objectMapper The object mapper that serializes requests.
+	 */
+	private void initializeSerializers(ObjectMapper objectMapper) {
+		try {
+			objectMapper.writeValueAsBytes(new ChatGptRequest(modelSelector.getActiveModel(),
+					List.of(new ChatGptRequest.Message(MessageRole.USER, "warm-up"))));
+		}
+		catch (JsonProcessingException ex) {
+			// The serializers are created on the first prompt instead
+		}
+	}
+
+	/**
+	 * Stops the keep-alive pings.
+	 */
+	@Override
+	public void destroy() {
+		if (pings != null) {
+			pings.cancel(false);
+		}
+		Disposable inFlight = ping;
+		if (inFlight != null) {
+			inFlight.dispose();
+		}
+	}
+
+}
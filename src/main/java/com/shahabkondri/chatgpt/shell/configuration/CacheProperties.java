@@ -0,0 +1,37 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * {@link ConfigurationProperties properties} of the response cache, such as whether it is
+ * enabled, where cached responses are stored, how long they are valid and how many are
+ * kept in memory and on disk. These properties can be set using the 'chat.cache' prefix
+ * in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.cache")
+public record CacheProperties(@DefaultValue("false") boolean enabled, Path directory,
+		@DefaultValue("7d") Duration ttl, @DefaultValue("256") int memorySize, @DefaultValue("10000") int diskSize) {
+
+	/**
+	 * Constructs a new CacheProperties instance.
+	 * @param enabled Whether the responses of identical requests are replayed from the
+	 * cache.
+	 * @param directory The directory of the cached responses, '.chatgptshell/cache' in
+	 * the home directory of the user if not set.
+	 * @param ttl How long cached responses are valid.
+	 * @param memorySize The number of responses kept in memory.
+	 * @param diskSize The number of responses kept on disk.
+	 */
+	public CacheProperties {
+		if (directory == null) {
+			directory = Path.of(System.getProperty("user.home"), ".chatgptshell", "cache");
+		}
+	}
+
+}
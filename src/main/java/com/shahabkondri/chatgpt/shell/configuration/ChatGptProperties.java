@@ -4,13 +4,59 @@ import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+import java.net.URI;
+import java.time.Duration;
+
 /**
  * {@link ConfigurationProperties properties} that hold properties related to the ChatGPT
- * API, such as the text completion model to be used and the initial system message. These
- * properties can be set using the 'chat.gpt' prefix in the configuration file.
+ * API, such as the text completion model that is active at startup, the initial system
+ * message, how long to wait for the next delta of a streamed response, the model that
+ * generates conversation titles, the tuning of the HTTP client and how streamed responses
+ * are decoded. These properties can be set using the 'chat.gpt' prefix in the
+ * configuration file.
  *
  * @author Shahab Kondri
  */
 @ConfigurationProperties(prefix = "chat.gpt")
-public record ChatGptProperties(@DefaultValue("GPT_3_5_TURBO") TextCompletionModel model, String systemMessage) {
+public record ChatGptProperties(@DefaultValue("GPT_3_5_TURBO") TextCompletionModel model, String systemMessage,
+		@DefaultValue("30s") Duration idleTimeout, @DefaultValue("GPT_3_5_TURBO") TextCompletionModel titleModel,
+		@DefaultValue Http http, @DefaultValue Stream stream) {
+
+	/**
+	 * The tuning of the HTTP client that sends the requests to the ChatGPT API. These
+	 * properties can be set using the 'chat.gpt.http' prefix in the configuration file.
+	 * @param maxConnections The maximum number of connections per host. Further requests
+	 * wait for a connection to be released.
+	 * @param pendingAcquireTimeout How long a request may wait for a connection before it
+	 * fails.
+	 * @param maxIdleTime How long a connection may stay idle in the pool before it is
+	 * closed.
+	 * @param connectTimeout How long to wait for a connection to be established.
+	 * @param readTimeout How long to wait for the next read of a response, or
+	 * {@code null} to rely on the idle timeout of streamed responses only.
+	 * @param http2 Whether HTTP/2 is negotiated with the API, falling back to HTTP/1.1.
+	 * @param compression Whether compressed responses are accepted.
+	 * @param nativeTransport Whether the native transport of the platform, such as epoll
+	 * on Linux, is used if it is on the class path.
+	 */
+	public record Http(@DefaultValue("50") int maxConnections, @DefaultValue("10s") Duration pendingAcquireTimeout,
+			@DefaultValue("60s") Duration maxIdleTime, @DefaultValue("10s") Duration connectTimeout,
+			Duration readTimeout, @DefaultValue("false") boolean http2, @DefaultValue("false") boolean compression,
+			@DefaultValue("true") boolean nativeTransport) {
+	}
+
+	/**
+	 * How streamed responses of the ChatGPT API are decoded. These properties can be set
+	 * using the 'chat.gpt.stream' prefix in the configuration file.
+	 * @param leanDecoder Whether the content deltas are extracted straight from the bytes
+	 * of the response, instead of decoding every chunk through the ChatGPT client. It is
+	 * opt-in, as the lean decoder sends the requests itself, to the completions URL and
+	 * with the API key of the shell rather than those of the ChatGPT client.
+	 * @param completionsUrl The URL of the chat completions endpoint that the lean
+	 * decoder streams from.
+	 */
+	public record Stream(@DefaultValue("false") boolean leanDecoder,
+			@DefaultValue("https://api.openai.com/v1/chat/completions") URI completionsUrl) {
+	}
+
 }
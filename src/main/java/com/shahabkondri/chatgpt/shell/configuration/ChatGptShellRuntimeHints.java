@@ -0,0 +1,52 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import com.shahabkondri.chatgpt.api.client.ChatGptClient;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.shell.session.Conversation;
+import com.shahabkondri.chatgpt.shell.session.ConversationSummary;
+import com.shahabkondri.chatgpt.shell.session.MessageEntity;
+import org.springframework.aop.SpringProxy;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.projection.TargetAware;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link RuntimeHintsRegistrar} of the hints that a GraalVM native image of the shell
+ * needs beyond those inferred by Spring AOT: reflective access to the JPA entities, the
+ * Jackson bindings of the ChatGPT API requests and streamed responses, and the JDK
+ * proxies that Spring Data creates for the {@link ConversationSummary} projection.
+ *
+ * @author Shahab Kondri
+ */
+public class ChatGptShellRuntimeHints implements RuntimeHintsRegistrar {
+
+	private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+	@Override
+	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+		for (Class<?> entity : new Class<?>[] { Conversation.class, MessageEntity.class }) {
+			hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+					MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+		}
+
+		bindingRegistrar.registerReflectionHints(hints.reflection(), ChatGptRequest.class);
+		Method completions = ReflectionUtils.findMethod(ChatGptClient.class, "completions", ChatGptRequest.class);
+		if (completions != null) {
+			Class<?> response = ResolvableType.forMethodReturnType(completions).getGeneric(0).resolve();
+			if (response != null) {
+				bindingRegistrar.registerReflectionHints(hints.reflection(), response);
+			}
+		}
+
+		hints.proxies().registerJdkProxy(ConversationSummary.class, TargetAware.class, SpringProxy.class,
+				DecoratingProxy.class);
+	}
+
+}
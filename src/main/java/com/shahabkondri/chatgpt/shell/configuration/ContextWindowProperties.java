@@ -0,0 +1,31 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * {@link ConfigurationProperties properties} that define how much of the conversation
+ * history is sent with each request, such as the context window size of each text
+ * completion model and the number of tokens reserved for the reply. These properties can
+ * be set using the 'chat.context' prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.context")
+public record ContextWindowProperties(Map<TextCompletionModel, Integer> maxTokens,
+		@DefaultValue("1024") int reservedTokens) {
+
+	/**
+	 * Constructs a new ContextWindowProperties instance.
+	 * @param maxTokens The context window size in tokens for each model. Models that are
+	 * not listed use their default window size.
+	 * @param reservedTokens The number of tokens kept free for the reply.
+	 */
+	public ContextWindowProperties {
+		maxTokens = (maxTokens != null) ? Map.copyOf(maxTokens) : Map.of();
+	}
+
+}
@@ -0,0 +1,16 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * {@link ConfigurationProperties properties} that control how blocking work, such as
+ * persisting a chat turn, is executed. Virtual threads are only used when they are
+ * enabled and the application runs on Java 21 or later. These properties can be set using
+ * the 'chat.execution' prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.execution")
+public record ExecutionProperties(@DefaultValue("false") boolean virtualThreads) {
+}
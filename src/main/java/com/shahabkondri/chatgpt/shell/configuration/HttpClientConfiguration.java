@@ -0,0 +1,74 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.HttpResources;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * {@link Configuration} of the HTTP client that the web clients of the shell, including
+ * the ChatGPT client, are built with. The {@link ClientHttpConnector} defined here
+ * replaces the default one of Spring Boot, so that the connection pool, the timeouts, the
+ * HTTP version, compression and the native transport are set by the 'chat.gpt.http'
+ * properties. Requests that wait for a connection fail after the pending acquire timeout
+ * instead of queueing silently, and the pool sizes are recorded by {@link ChatMetrics},
+ * if available, so that an exhausted pool shows up in the ':stats' command.
+ *
+ * @author Shahab Kondri
+ */
+@Configuration(proxyBeanMethods = false)
+public class HttpClientConfiguration {
+
+	private static final String POOL_NAME = "chat-gpt";
+
+	/**
+	 * Creates the connection pool of the HTTP client.
+	 * @param chatGptProperties The properties that size the pool.
+	 * @param chatMetrics The metrics that record the pool sizes, if available.
+	 * @return The connection pool.
+	 */
+	@Bean(destroyMethod = "dispose")
+	public ConnectionProvider chatGptConnectionProvider(ChatGptProperties chatGptProperties,
+			ObjectProvider<ChatMetrics> chatMetrics) {
+		ChatGptProperties.Http http = chatGptProperties.http();
+		ConnectionProvider.Builder builder = ConnectionProvider.builder(POOL_NAME)
+				.maxConnections(http.maxConnections()).pendingAcquireTimeout(http.pendingAcquireTimeout())
+				.maxIdleTime(http.maxIdleTime()).evictInBackground(http.maxIdleTime());
+		ChatMetrics recorder = chatMetrics.getIfAvailable();
+		if (recorder != null) {
+			builder.metrics(true, () -> (poolName, id, remoteAddress, metrics) -> recorder
+					.registerConnectionPool(String.valueOf(remoteAddress), metrics));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Creates the connector that the web clients send their requests through.
+	 * @param chatGptProperties The properties that tune the HTTP client.
+	 * @param chatGptConnectionProvider The connection pool of the HTTP client.
+	 * @return The connector.
+	 */
+	@Bean
+	public ClientHttpConnector chatGptClientHttpConnector(ChatGptProperties chatGptProperties,
+			ConnectionProvider chatGptConnectionProvider) {
+		ChatGptProperties.Http http = chatGptProperties.http();
+		HttpClient httpClient = HttpClient.create(chatGptConnectionProvider)
+				.runOn(HttpResources.get(), http.nativeTransport())
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(http.connectTimeout().toMillis()))
+				.protocol(http.http2() ? new HttpProtocol[] { HttpProtocol.H2, HttpProtocol.HTTP11 }
+						: new HttpProtocol[] { HttpProtocol.HTTP11 })
+				.compress(http.compression()).keepAlive(true);
+		if (http.readTimeout() != null) {
+			httpClient = httpClient.responseTimeout(http.readTimeout());
+		}
+		return new ReactorClientHttpConnector(httpClient);
+	}
+
+}
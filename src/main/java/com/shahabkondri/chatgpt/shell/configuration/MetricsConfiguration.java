@@ -0,0 +1,27 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * {@link Configuration} of the meter registry that collects the chat metrics. A
+ * Prometheus registry is used so that the metrics can be dumped in the Prometheus text
+ * format without running an HTTP endpoint.
+ *
+ * @author Shahab Kondri
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfiguration {
+
+	/**
+	 * Creates the meter registry of the shell.
+	 * @return The meter registry.
+	 */
+	@Bean(destroyMethod = "close")
+	public PrometheusMeterRegistry prometheusMeterRegistry() {
+		return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+	}
+
+}
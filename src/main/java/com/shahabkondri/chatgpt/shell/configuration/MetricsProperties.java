@@ -0,0 +1,40 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * {@link ConfigurationProperties properties} of the chat metrics, such as whether and
+ * where they are dumped when the shell exits. These properties can be set using the
+ * 'chat.metrics' prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.metrics")
+public record MetricsProperties(@DefaultValue("NONE") Dump dump, Path dumpFile) {
+
+	/**
+	 * The formats in which the metrics can be dumped on exit.
+	 */
+	public enum Dump {
+
+		/**
+		 * The metrics are not dumped.
+		 */
+		NONE,
+
+		/**
+		 * The metrics are dumped as a JSON array of meters.
+		 */
+		JSON,
+
+		/**
+		 * The metrics are dumped in the Prometheus text exposition format.
+		 */
+		PROMETHEUS
+
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * {@link ConfigurationProperties properties} of the mock OpenAI server that is started
+ * with the 'mock' profile, such as the number of deltas streamed per reply, the delays
+ * between them and how often requests fail. Instead of generated deltas, the server can
+ * replay the deltas of a stream file, one JSON string per line, so that every reply and
+ * thus every load test is the same. These properties can be set using the 'chat.mock'
+ * prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.mock")
+public record MockProperties(@DefaultValue("0") int port, @DefaultValue("200") int tokens,
+		@DefaultValue("250ms") Duration firstTokenDelay, @DefaultValue("20ms") Duration tokenDelay,
+		@DefaultValue("10ms") Duration jitter, @DefaultValue("0") double errorRate,
+		@DefaultValue("0") double tooManyRequestsRate, Path stream) {
+}
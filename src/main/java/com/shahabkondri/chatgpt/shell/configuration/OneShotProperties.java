@@ -0,0 +1,15 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * {@link ConfigurationProperties properties} of the one-shot mode, in which a single
+ * prompt given on the command line is answered without starting the interactive shell.
+ * These properties can be set using the 'chat.one-shot' prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.one-shot")
+public record OneShotProperties(@DefaultValue("false") boolean persist) {
+}
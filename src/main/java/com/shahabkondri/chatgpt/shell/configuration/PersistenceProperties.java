@@ -0,0 +1,19 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * {@link ConfigurationProperties properties} that control how conversation messages are
+ * persisted, such as whether they are written behind the conversation in batches, how
+ * often pending messages are flushed and how many messages are written per batch. These
+ * properties can be set using the 'chat.persistence' prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.persistence")
+public record PersistenceProperties(@DefaultValue("true") boolean writeBehind,
+		@DefaultValue("500ms") Duration flushInterval, @DefaultValue("50") int batchSize) {
+}
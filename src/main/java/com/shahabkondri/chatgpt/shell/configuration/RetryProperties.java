@@ -0,0 +1,45 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * {@link ConfigurationProperties properties} that control how requests to the ChatGPT API
+ * recover from transient errors, such as how often and how long to retry, when to stop
+ * sending requests to a failing model and which model to fall back to when the configured
+ * one is throttled. These properties can be set using the 'chat.retry' prefix in the
+ * configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.retry")
+public record RetryProperties(@DefaultValue("3") int maxAttempts, @DefaultValue("500ms") Duration initialBackoff,
+		@DefaultValue("10s") Duration maxBackoff, @DefaultValue("0.5") double jitter,
+		@DefaultValue("5") int failureThreshold, @DefaultValue("30s") Duration openDuration,
+		TextCompletionModel fallbackModel) {
+
+	/**
+	 * Constructs a new RetryProperties instance.
+	 * @param maxAttempts The maximum number of attempts of a request, including the first
+	 * one.
+	 * @param initialBackoff The delay before the first retry, doubled for every further
+	 * retry.
+	 * @param maxBackoff The longest delay before a retry. A request is not retried if the
+	 * API asks to wait longer than this.
+	 * @param jitter The fraction of the delay that is randomized, between 0 and 1.
+	 * @param failureThreshold The number of consecutive failed requests to a model after
+	 * which requests to it fail fast.
+	 * @param openDuration How long requests to a failing model fail fast before one is
+	 * let through again.
+	 * @param fallbackModel The model to send a request to when the requested model is
+	 * throttled or failing, or {@code null} to not fall back.
+	 */
+	public RetryProperties {
+		maxAttempts = Math.max(maxAttempts, 1);
+		jitter = Math.min(Math.max(jitter, 0), 1);
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * {@link ConfigurationProperties properties} that control the routing of short prompts to
+ * a faster model, such as whether prompts are routed automatically, which model is the
+ * fast one, how short a prompt must be and how often the fast model may fail before
+ * prompts are no longer routed to it. These properties can be set using the
+ * 'chat.routing' prefix in the configuration file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.routing")
+public record RoutingProperties(@DefaultValue("false") boolean enabled,
+		@DefaultValue("GPT_3_5_TURBO") TextCompletionModel fastModel, @DefaultValue("32") int shortPromptTokens,
+		@DefaultValue("0.25") double maxErrorRate) {
+
+	/**
+	 * Constructs a new RoutingProperties instance.
+	 * @param enabled Whether short prompts are sent to the fast model instead of the
+	 * active one. If disabled, the shell only suggests switching.
+	 * @param fastModel The model short prompts are routed to.
+	 * @param shortPromptTokens The number of tokens up to which a prompt counts as short.
+	 * @param maxErrorRate The recent error rate of the fast model, between 0 and 1, above
+	 * which prompts are no longer routed to it.
+	 */
+	public RoutingProperties {
+		maxErrorRate = Math.min(Math.max(maxErrorRate, 0), 1);
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * {@link Configuration} of the schedulers of the shell. The scheduler shared by the
+ * terminal components, such as the spinner and the stream renderer, runs their short
+ * periodic tasks on a single long-lived daemon thread, so that no thread has to be
+ * started for each prompt. The blocking scheduler runs work that must stay off the
+ * Reactor event loops, such as database calls, on virtual threads when they are enabled
+ * and available, or on a bounded elastic thread pool otherwise. The application task
+ * executor bootstraps JPA in the background.
+ *
+ * @author Shahab Kondri
+ */
+@Configuration(proxyBeanMethods = false)
+public class SchedulerConfiguration {
+
+	private static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+	/**
+	 * Creates the {@link ScheduledExecutorService} shared by the terminal components. It
+	 * must only be used for short, non-blocking tasks.
+	 * @return The shared scheduler.
+	 */
+	@Bean(destroyMethod = "shutdownNow")
+	public ScheduledExecutorService shellScheduler() {
+		return Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "shell-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Creates the application task executor. As the shared scheduler is an executor,
+	 * Spring Boot backs off from creating this one, and without it JPA would be
+	 * bootstrapped on the main thread before the prompt is shown, whatever the bootstrap
+	 * mode. The executor starts a daemon thread per task, which is only the JPA
+	 * bootstrap.
+	 * @return The application task executor.
+	 */
+	@Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	public AsyncTaskExecutor applicationTaskExecutor() {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("application-task-");
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	/**
+	 * Creates the Reactor {@link Scheduler} for blocking work, such as persisting a chat
+	 * turn or reading the response cache.
+	 * @param executionProperties The properties that control whether virtual threads are
+	 * used.
+	 * @return The blocking scheduler.
+	 */
+	@Bean(destroyMethod = "dispose")
+	public Scheduler blockingScheduler(ExecutionProperties executionProperties) {
+		if (executionProperties.virtualThreads() && Runtime.version().feature() >= VIRTUAL_THREADS_JAVA_VERSION) {
+			return Schedulers.fromExecutorService(newVirtualThreadPerTaskExecutor(), "chat-virtual");
+		}
+		return Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+				Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "chat-blocking", 60, true);
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for each task. The executor is
+	 * looked up reflectively, as the application is compiled for Java 17.
+	 * @return The virtual thread executor.
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException("Virtual threads are not available", ex);
+		}
+	}
+
+}
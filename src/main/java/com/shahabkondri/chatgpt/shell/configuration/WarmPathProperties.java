@@ -0,0 +1,22 @@
+package com.shahabkondri.chatgpt.shell.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * {@link ConfigurationProperties properties} of the warm path, which keeps the connection
+ * to the ChatGPT API open and prepares the next request while the user is typing, such as
+ * whether it is enabled, how often an idle connection is pinged and which URL is pinged.
+ * These properties can be set using the 'chat.warm-path' prefix in the configuration
+ * file.
+ *
+ * @author Shahab Kondri
+ */
+@ConfigurationProperties(prefix = "chat.warm-path")
+public record WarmPathProperties(@DefaultValue("false") boolean enabled,
+		@DefaultValue("30s") Duration pingInterval,
+		@DefaultValue("https://api.openai.com/v1/models") URI pingUrl) {
+}
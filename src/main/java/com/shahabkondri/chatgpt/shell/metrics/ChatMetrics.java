@@ -0,0 +1,304 @@
+package com.shahabkondri.chatgpt.shell.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shahabkondri.chatgpt.shell.configuration.MetricsProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.HistogramSupport;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.netty.resources.ConnectionPoolMetrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Records the metrics of the chat pipeline: the time to first token, the duration and
+ * token rate of streamed replies, the latency of title generation and database writes,
+ * the timeouts and cancelled replies, the errors by type, the messages that could not be
+ * stored, the writes and flushes of the stream renderer and the connections of the HTTP
+ * client. The metrics are kept in memory, can be displayed with the ':stats' command and
+ * are dumped as JSON or in the Prometheus text format when the shell exits, if
+ * configured.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class ChatMetrics implements DisposableBean {
+
+	/**
+	 * The prefix of the names of all chat metrics.
+	 */
+	public static final String PREFIX = "chat.";
+
+	private static final double[] PERCENTILES = { 0.5, 0.95 };
+
+	private final PrometheusMeterRegistry meterRegistry;
+
+	private final MetricsProperties metricsProperties;
+
+	private final ObjectMapper objectMapper;
+
+	private final Timer firstTokenTimer;
+
+	private final Timer streamTimer;
+
+	private final DistributionSummary tokensPerSecond;
+
+	private final Counter timeouts;
+
+	private final Counter cancellations;
+
+	private final Counter droppedMessages;
+
+	private final Counter renderWrites;
+
+	private final Timer renderFlushTimer;
+
+	/**
+	 * Constructs a new ChatMetrics and registers its meters.
+	 * @param meterRegistry The registry that holds the meters.
+	 * @param metricsProperties The properties that control the dump on exit.
+	 * @param objectMapper The object mapper for writing the JSON dump.
+	 */
+	public ChatMetrics(PrometheusMeterRegistry meterRegistry, MetricsProperties metricsProperties,
+			ObjectMapper objectMapper) {
+		this.meterRegistry = meterRegistry;
+		this.metricsProperties = metricsProperties;
+		this.objectMapper = objectMapper;
+		this.firstTokenTimer = Timer.builder(PREFIX + "first.token")
+				.description("Time from sending a prompt to receiving the first delta of the reply")
+				.publishPercentiles(PERCENTILES).register(meterRegistry);
+		this.streamTimer = Timer.builder(PREFIX + "stream")
+				.description("Time from the first delta to the end of the streamed reply")
+				.publishPercentiles(PERCENTILES).register(meterRegistry);
+		this.tokensPerSecond = DistributionSummary.builder(PREFIX + "stream.tokens.rate").baseUnit("tokens/s")
+				.description("Tokens per second of the streamed reply").publishPercentiles(PERCENTILES)
+				.register(meterRegistry);
+		this.timeouts = Counter.builder(PREFIX + "timeouts").description("Replies that timed out")
+				.register(meterRegistry);
+		this.cancellations = Counter.builder(PREFIX + "cancellations")
+				.description("Replies cancelled by the user before they were complete").register(meterRegistry);
+		this.droppedMessages = Counter.builder(PREFIX + "db.dropped.messages")
+				.description("Queued messages that could not be written and were dropped").register(meterRegistry);
+		this.renderWrites = Counter.builder(PREFIX + "render.writes")
+				.description("Deltas written to the terminal buffer").register(meterRegistry);
+		this.renderFlushTimer = Timer.builder(PREFIX + "render.flush")
+				.description("Time text waited in the terminal buffer before it was flushed")
+				.publishPercentiles(PERCENTILES).register(meterRegistry);
+	}
+
+	/**
+	 * Records the time to first token of a reply.
+	 * @param nanos The time from sending the prompt to receiving the first delta, in
+	 * nanoseconds.
+	 */
+	public void recordFirstToken(long nanos) {
+		firstTokenTimer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Records a completely streamed reply.
+	 * @param nanos The time from the first delta to the end of the reply, in nanoseconds.
+	 * @param tokens The number of tokens of the reply.
+	 */
+	public void recordStream(long nanos, int tokens) {
+		streamTimer.record(nanos, TimeUnit.NANOSECONDS);
+		if (nanos > 0 && tokens > 0) {
+			tokensPerSecond.record(tokens / (nanos / 1e9));
+		}
+	}
+
+	/**
+	 * Records the generation of a conversation title.
+	 * @param nanos The time it took, in nanoseconds.
+	 * @param outcome The outcome, such as {@code success}, {@code timeout} or
+	 * {@code error}.
+	 */
+	public void recordTitleGeneration(long nanos, String outcome) {
+		Timer.builder(PREFIX + "title.generation").description("Time to generate a conversation title")
+				.tag("outcome", outcome).publishPercentiles(PERCENTILES).register(meterRegistry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Records a database write.
+	 * @param operation The kind of write, such as {@code turn} for the writes made when a
+	 * turn ends, or {@code batch} for a batch of queued messages.
+	 * @param nanos The time it took, in nanoseconds.
+	 */
+	public void recordDatabaseWrite(String operation, long nanos) {
+		Timer.builder(PREFIX + "db.write").description("Time spent writing to the database")
+				.tag("operation", operation).publishPercentiles(PERCENTILES).register(meterRegistry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Records an error of the chat pipeline. Timeouts are also counted on their own.
+	 * @param throwable The error.
+	 */
+	public void recordError(Throwable throwable) {
+		if (throwable instanceof TimeoutException) {
+			timeouts.increment();
+		}
+		Counter.builder(PREFIX + "errors").description("Errors of the chat pipeline by type")
+				.tag("type", errorType(throwable)).register(meterRegistry).increment();
+	}
+
+	/**
+	 * Records a delta written to the terminal buffer.
+	 */
+	public void recordRenderWrite() {
+		renderWrites.increment();
+	}
+
+	/**
+	 * Records a flush of the terminal buffer. The count of the timer is the number of
+	 * flushes.
+	 * @param nanos The time the oldest buffered text waited before it was flushed, in
+	 * nanoseconds.
+	 */
+	public void recordRenderFlush(long nanos) {
+		renderFlushTimer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Records a queued message that could not be written and was dropped.
+	 */
+	public void recordDroppedMessage() {
+		droppedMessages.increment();
+	}
+
+	/**
+	 * Records a reply that was cancelled by the user.
+	 */
+	public void recordCancellation() {
+		cancellations.increment();
+	}
+
+	/**
+	 * Registers gauges for the connections of the HTTP client to a remote host: the
+	 * active, idle and pending connections, and the maximum number of connections.
+	 * @param remoteAddress The address of the remote host.
+	 * @param metrics The metrics of the connection pool of the host.
+	 */
+	public void registerConnectionPool(String remoteAddress, ConnectionPoolMetrics metrics) {
+		registerPoolGauge("active", "Connections in use", remoteAddress, metrics, ConnectionPoolMetrics::acquiredSize);
+		registerPoolGauge("idle", "Idle connections", remoteAddress, metrics, ConnectionPoolMetrics::idleSize);
+		registerPoolGauge("pending", "Requests waiting for a connection", remoteAddress, metrics,
+				ConnectionPoolMetrics::pendingAcquireSize);
+		registerPoolGauge("max", "Maximum number of connections", remoteAddress, metrics,
+				ConnectionPoolMetrics::maxAllocatedSize);
+	}
+
+	private void registerPoolGauge(String name, String description, String remoteAddress,
+			ConnectionPoolMetrics metrics, ToIntFunction<ConnectionPoolMetrics> value) {
+		Gauge.builder(PREFIX + "http.pool." + name, metrics, pool -> value.applyAsInt(pool)).description(description)
+				.tag("remote", remoteAddress).register(meterRegistry);
+	}
+
+	/**
+	 * Returns the timers, distribution summaries, counters and gauges of the chat
+	 * pipeline, sorted by name.
+	 * @return The chat meters.
+	 */
+	public List<Meter> getMeters() {
+		return meterRegistry.getMeters().stream()
+				.filter(meter -> meter instanceof Timer || meter instanceof DistributionSummary
+						|| meter instanceof Counter || meter instanceof Gauge)
+				.filter(meter -> meter.getId().getName().startsWith(PREFIX))
+				.sorted(Comparator.comparing((Meter meter) -> meter.getId().getName())
+						.thenComparing(meter -> meter.getId().getTags().toString()))
+				.toList();
+	}
+
+	/**
+	 * Writes the metrics in the given format.
+	 * @param format The format of the metrics, JSON or Prometheus.
+	 * @return The metrics, or an empty string if the format is {@code NONE}.
+	 */
+	public String scrape(MetricsProperties.Dump format) {
+		return switch (format) {
+			case NONE -> "";
+			case PROMETHEUS -> meterRegistry.scrape();
+			case JSON -> toJson();
+		};
+	}
+
+	/**
+	 * Dumps the metrics to the configured file, or to the standard error if no file is
+	 * configured, if a dump format is configured.
+	 */
+	@Override
+	public void destroy() {
+		if (metricsProperties.dump() == MetricsProperties.Dump.NONE) {
+			return;
+		}
+		String metrics = scrape(metricsProperties.dump());
+		if (metricsProperties.dumpFile() == null) {
+			System.err.println(metrics);
+			return;
+		}
+		try {
+			Files.writeString(metricsProperties.dumpFile(), metrics, StandardCharsets.UTF_8);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Returns the type of the given error as used in the metrics, such as {@code 429} for
+	 * an HTTP error response or the simple class name of other errors.
+	 * @param throwable The error.
+	 * @return The type of the error.
+	 */
+	public static String errorType(Throwable throwable) {
+		if (throwable instanceof WebClientResponseException ex) {
+			return String.valueOf(ex.getStatusCode().value());
+		}
+		return throwable.getClass().getSimpleName();
+	}
+
+	private String toJson() {
+		ArrayNode meters = objectMapper.createArrayNode();
+		for (Meter meter : getMeters()) {
+			ObjectNode node = meters.addObject().put("name", meter.getId().getName()).put("type",
+					meter.getId().getType().name().toLowerCase());
+			ObjectNode tags = node.putObject("tags");
+			for (Tag tag : meter.getId().getTags()) {
+				tags.put(tag.getKey(), tag.getValue());
+			}
+			ObjectNode measurements = node.putObject("measurements");
+			for (Measurement measurement : meter.measure()) {
+				measurements.put(measurement.getStatistic().getTagValueRepresentation(), measurement.getValue());
+			}
+			if (meter instanceof HistogramSupport histogram) {
+				ObjectNode percentiles = node.putObject("percentiles");
+				for (ValueAtPercentile percentile : histogram.takeSnapshot().percentileValues()) {
+					percentiles.put(String.valueOf(percentile.percentile()), (meter instanceof Timer)
+							? percentile.value(TimeUnit.SECONDS) : percentile.value());
+				}
+			}
+		}
+		return meters.toPrettyString();
+	}
+
+}
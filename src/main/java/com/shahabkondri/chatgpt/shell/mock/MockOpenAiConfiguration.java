@@ -0,0 +1,56 @@
+package com.shahabkondri.chatgpt.shell.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahabkondri.chatgpt.shell.configuration.MockProperties;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * {@link Configuration} of the 'mock' profile, which replaces the OpenAI API with an
+ * embedded {@link MockOpenAiServer}, so that the shell can be run and load-tested without
+ * network access or an API key. Requests of the ChatGPT client keep their path and body
+ * and are only redirected to the mock server.
+ *
+ * @author Shahab Kondri
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("mock")
+public class MockOpenAiConfiguration {
+
+	/**
+	 * Creates and starts the mock OpenAI server.
+	 * @param mockProperties The properties that control the replies of the server.
+	 * @param objectMapper The object mapper for writing the streamed chunks.
+	 * @return The mock OpenAI server.
+	 */
+	@Bean
+	public MockOpenAiServer mockOpenAiServer(MockProperties mockProperties, ObjectMapper objectMapper) {
+		return new MockOpenAiServer(mockProperties, objectMapper);
+	}
+
+	/**
+	 * Creates a {@link WebClientCustomizer} that redirects every request of the web
+	 * clients built by the application, including the ChatGPT client, to the mock server.
+	 * @param mockOpenAiServer The mock OpenAI server.
+	 * @return The customizer.
+	 */
+	@Bean
+	public WebClientCustomizer mockOpenAiWebClientCustomizer(MockOpenAiServer mockOpenAiServer) {
+		URI baseUrl = URI.create(mockOpenAiServer.getBaseUrl());
+		ExchangeFilterFunction redirect = ExchangeFilterFunction.ofRequestProcessor(request -> {
+			URI url = UriComponentsBuilder.fromUri(request.url()).scheme(baseUrl.getScheme()).host(baseUrl.getHost())
+					.port(baseUrl.getPort()).build(true).toUri();
+			return Mono.just(ClientRequest.from(request).url(url).build());
+		});
+		return builder -> builder.filter(redirect);
+	}
+
+}
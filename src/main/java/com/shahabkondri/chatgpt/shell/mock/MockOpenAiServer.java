@@ -0,0 +1,193 @@
+package com.shahabkondri.chatgpt.shell.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shahabkondri.chatgpt.shell.configuration.MockProperties;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An embedded HTTP server that stands in for the OpenAI chat completions endpoint. Every
+ * request is answered with a server-sent event stream of generated deltas, or of the
+ * deltas of the configured stream file, sent with the configured delay and jitter between
+ * them, or fails with an HTTP 500 or 429 response at the configured rates. The server
+ * listens on the loopback interface only and is stopped when the application shuts down.
+ *
+ * @author Shahab Kondri
+ */
+public class MockOpenAiServer implements DisposableBean {
+
+	private static final String COMPLETIONS_PATH = "/chat/completions";
+
+	private static final String MODEL = "mock";
+
+	private static final String DONE_EVENT = "data: [DONE]\n\n";
+
+	private static final int PARAGRAPH_LENGTH = 40;
+
+	private static final List<String> WORDS = List.of("the", "shell", "streams", "a", "reply", "from", "mock",
+			"server", "with", "tokens", "that", "arrive", "one", "by", "after", "another", "to", "measure",
+			"latency", "and", "throughput", "of", "rendering", "persistence");
+
+	private final MockProperties mockProperties;
+
+	private final ObjectMapper objectMapper;
+
+	private final List<String> replayedDeltas;
+
+	private final DisposableServer server;
+
+	/**
+	 * Constructs a new MockOpenAiServer and starts listening for requests.
+	 * @param mockProperties The properties that control the replies of the server.
+	 * @param objectMapper The object mapper for reading the stream file and writing the
+	 * streamed chunks.
+	 */
+	public MockOpenAiServer(MockProperties mockProperties, ObjectMapper objectMapper) {
+		this.mockProperties = mockProperties;
+		this.objectMapper = objectMapper;
+		this.replayedDeltas = (mockProperties.stream() != null) ? readDeltas(mockProperties.stream()) : null;
+		this.server = HttpServer.create().host("localhost").port(mockProperties.port()).handle(this::handle)
+				.bindNow();
+	}
+
+	/**
+	 * Returns the base URL of the server, e.g. {@code http://localhost:43125}.
+	 * @return The base URL of the server.
+	 */
+	public String getBaseUrl() {
+		return "http://" + server.host() + ":" + server.port();
+	}
+
+	@Override
+	public void destroy() {
+		server.disposeNow();
+	}
+
+	/**
+	 * Reads the deltas of a stream file, one JSON string per line. Blank lines are
+	 * skipped.
+	 * @param stream The stream file.
+	 * @return The deltas, in order.
+	 */
+	private List<String> readDeltas(Path stream) {
+		try {
+			List<String> deltas = new ArrayList<>();
+			for (String line : Files.readAllLines(stream, StandardCharsets.UTF_8)) {
+				if (!line.isBlank()) {
+					deltas.add(objectMapper.readValue(line, String.class));
+				}
+			}
+			return List.copyOf(deltas);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Cannot read the mock stream " + stream, ex);
+		}
+	}
+
+	private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+		if (!HttpMethod.POST.equals(request.method()) || !request.uri().endsWith(COMPLETIONS_PATH)) {
+			return response.status(HttpResponseStatus.NOT_FOUND).send();
+		}
+
+		double failure = ThreadLocalRandom.current().nextDouble();
+		return request.receive().then(Mono.defer(() -> {
+			if (failure < mockProperties.tooManyRequestsRate()) {
+				return error(response.header(HttpHeaderNames.RETRY_AFTER, "1"), HttpResponseStatus.TOO_MANY_REQUESTS,
+						"rate_limit_exceeded");
+			}
+			if (failure < mockProperties.tooManyRequestsRate() + mockProperties.errorRate()) {
+				return error(response, HttpResponseStatus.INTERNAL_SERVER_ERROR, "server_error");
+			}
+			return response.header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+					.header(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+					.send(events().map(event -> Unpooled.wrappedBuffer(event.getBytes(StandardCharsets.UTF_8))),
+							buffer -> true)
+					.then();
+		}));
+	}
+
+	private Mono<Void> error(HttpServerResponse response, HttpResponseStatus status, String code) {
+		ObjectNode body = objectMapper.createObjectNode();
+		body.putObject("error").put("message", "Mock " + code.replace('_', ' ')).put("type", code).put("code", code);
+		return response.status(status).header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+				.sendString(Mono.just(body.toString())).then();
+	}
+
+	/**
+	 * Generates the events of a streamed reply: a first chunk with the assistant role,
+	 * one chunk per delta, a last chunk with the finish reason and the terminating
+	 * {@code [DONE]} event. The deltas of the stream file are replayed if one is
+	 * configured; otherwise deltas are mostly words, with a paragraph break now and then.
+	 * @return The events, delayed as configured.
+	 */
+	private Flux<String> events() {
+		String id = "chatcmpl-" + UUID.randomUUID();
+		long created = System.currentTimeMillis() / 1000;
+		Flux<String> deltas = ((replayedDeltas != null) ? Flux.fromIterable(replayedDeltas) : generatedDeltas())
+				.concatMap(delta -> Mono.just(chunk(id, created, null, delta, null)).delayElement(tokenDelay()));
+
+		return Flux.concat(Mono.just(chunk(id, created, "assistant", null, null))
+				.delayElement(mockProperties.firstTokenDelay()), deltas,
+				Mono.just(chunk(id, created, null, null, "stop")), Mono.just(DONE_EVENT));
+	}
+
+	private Flux<String> generatedDeltas() {
+		return Flux.range(0, mockProperties.tokens()).map(index -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			if (index > 0 && random.nextInt(PARAGRAPH_LENGTH) == 0) {
+				return "\n\n";
+			}
+			String word = WORDS.get(random.nextInt(WORDS.size()));
+			return (index > 0) ? " " + word : word;
+		});
+	}
+
+	private Duration tokenDelay() {
+		long jitter = mockProperties.jitter().toMillis();
+		long offset = (jitter > 0) ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0;
+		return Duration.ofMillis(Math.max(0, mockProperties.tokenDelay().toMillis() + offset));
+	}
+
+	private String chunk(String id, long created, String role, String content, String finishReason) {
+		ObjectNode chunk = objectMapper.createObjectNode().put("id", id).put("object", "chat.completion.chunk")
+				.put("created", created).put("model", MODEL);
+		ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+		ObjectNode delta = choice.putObject("delta");
+		if (role != null) {
+			delta.put("role", role);
+		}
+		if (content != null) {
+			delta.put("content", content);
+		}
+		if (finishReason != null) {
+			choice.put("finish_reason", finishReason);
+		}
+		else {
+			choice.putNull("finish_reason");
+		}
+		return "data: " + chunk + "\n\n";
+	}
+
+}
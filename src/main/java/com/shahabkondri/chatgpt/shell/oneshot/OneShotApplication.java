@@ -0,0 +1,129 @@
+package com.shahabkondri.chatgpt.shell.oneshot;
+
+import com.shahabkondri.chatgpt.shell.completion.CompletionService;
+import com.shahabkondri.chatgpt.shell.completion.DeltaStreamClient;
+import com.shahabkondri.chatgpt.shell.completion.ResponseCache;
+import com.shahabkondri.chatgpt.shell.configuration.CacheProperties;
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.configuration.ExecutionProperties;
+import com.shahabkondri.chatgpt.shell.configuration.HttpClientConfiguration;
+import com.shahabkondri.chatgpt.shell.configuration.MockProperties;
+import com.shahabkondri.chatgpt.shell.configuration.OneShotProperties;
+import com.shahabkondri.chatgpt.shell.configuration.RetryProperties;
+import com.shahabkondri.chatgpt.shell.configuration.SchedulerConfiguration;
+import com.shahabkondri.chatgpt.shell.mock.MockOpenAiConfiguration;
+import com.shahabkondri.chatgpt.shell.session.Conversation;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The entry point of the one-shot mode, in which a single prompt given on the command
+ * line, or read from the standard input, is answered on the standard output and the
+ * process exits. Only the components needed to send the prompt are started: the
+ * interactive shell, the terminal and the command catalog are left out, and so is the
+ * database unless 'chat.one-shot.persist' is enabled. This class is deliberately not a
+ * {@code @Configuration}, so that it is not picked up by the component scan of the
+ * interactive application.
+ *
+ * @author Shahab Kondri
+ */
+@EnableAutoConfiguration(excludeName = { "org.springframework.shell.boot.ApplicationRunnerAutoConfiguration",
+		"org.springframework.shell.boot.CommandCatalogAutoConfiguration",
+		"org.springframework.shell.boot.CompleterAutoConfiguration",
+		"org.springframework.shell.boot.ComponentFlowAutoConfiguration",
+		"org.springframework.shell.boot.ExitCodeAutoConfiguration",
+		"org.springframework.shell.boot.JLineAutoConfiguration",
+		"org.springframework.shell.boot.JLineShellAutoConfiguration",
+		"org.springframework.shell.boot.LineReaderAutoConfiguration",
+		"org.springframework.shell.boot.ParameterResolverAutoConfiguration",
+		"org.springframework.shell.boot.ShellContextAutoConfiguration",
+		"org.springframework.shell.boot.ShellRunnerAutoConfiguration",
+		"org.springframework.shell.boot.SpringShellAutoConfiguration",
+		"org.springframework.shell.boot.StandardAPIAutoConfiguration",
+		"org.springframework.shell.boot.StandardCommandsAutoConfiguration",
+		"org.springframework.shell.boot.ThemingAutoConfiguration",
+		"org.springframework.shell.boot.UserConfigAutoConfiguration" })
+@AutoConfigurationPackage(basePackageClasses = Conversation.class)
+@EnableConfigurationProperties({ ChatGptProperties.class, CacheProperties.class, ExecutionProperties.class,
+		MockProperties.class, OneShotProperties.class, RetryProperties.class })
+@Import({ SchedulerConfiguration.class, HttpClientConfiguration.class, MockOpenAiConfiguration.class,
+		ResponseCache.class, DeltaStreamClient.class, CompletionService.class, OneShotRunner.class })
+public class OneShotApplication {
+
+	private static final String PERSIST_PROPERTY = "chat.one-shot.persist";
+
+	private static final List<String> PERSISTENCE_AUTO_CONFIGURATIONS = List.of(
+			DataSourceAutoConfiguration.class.getName(), DataSourceTransactionManagerAutoConfiguration.class.getName(),
+			HibernateJpaAutoConfiguration.class.getName(), JpaRepositoriesAutoConfiguration.class.getName(),
+			SqlInitializationAutoConfiguration.class.getName());
+
+	/**
+	 * Checks whether the given command line arguments ask for the one-shot mode, i.e.
+	 * whether the first argument that is not a {@code --property} is a prompt rather than
+	 * a ':' command. A single {@code -} reads the prompt from the standard input. Only
+	 * the interactive application is processed ahead of time, so in a native image, or
+	 * when AOT artifacts are used on the JVM, prompts are answered by the interactive
+	 * application in its non-interactive mode instead.
+	 * @param args The command line arguments passed to the application.
+	 * @return True if the prompt should be answered in the one-shot mode, false
+	 * otherwise.
+	 */
+	public static boolean isOneShot(String[] args) {
+		if (AotDetector.useGeneratedArtifacts()) {
+			return false;
+		}
+		return Arrays.stream(args).filter(arg -> !arg.startsWith("--")).findFirst().map(arg -> !arg.startsWith(":"))
+				.orElse(false);
+	}
+
+	/**
+	 * Starts the one-shot application, answers the prompt of the given command line
+	 * arguments and closes the application.
+	 * @param args The command line arguments passed to the application.
+	 * @return The exit code of the application.
+	 */
+	public static int run(String[] args) {
+		SpringApplication app = new SpringApplication(OneShotApplication.class);
+		app.setBannerMode(Banner.Mode.OFF);
+		app.setWebApplicationType(WebApplicationType.NONE);
+		app.setLogStartupInfo(false);
+		app.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event -> excludePersistence(
+				event.getEnvironment()));
+		ConfigurableApplicationContext context = app.run(args);
+		return SpringApplication.exit(context);
+	}
+
+	/**
+	 * Excludes the data source and JPA auto-configurations, unless the answer should be
+	 * persisted, so that the database is not opened at all.
+	 * @param environment The environment of the application, with the configuration files
+	 * already loaded.
+	 */
+	private static void excludePersistence(ConfigurableEnvironment environment) {
+		if (!environment.getProperty(PERSIST_PROPERTY, Boolean.class, false)) {
+			environment.getPropertySources().addFirst(new MapPropertySource("oneShotWithoutPersistence",
+					Map.of("spring.autoconfigure.exclude", String.join(",", PERSISTENCE_AUTO_CONFIGURATIONS))));
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.shahabkondri.chatgpt.shell.oneshot;
+
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.shell.command.ChatGptCommand;
+import com.shahabkondri.chatgpt.shell.completion.CompletionService;
+import com.shahabkondri.chatgpt.shell.configuration.ChatGptProperties;
+import com.shahabkondri.chatgpt.shell.configuration.OneShotProperties;
+import com.shahabkondri.chatgpt.shell.session.Conversation;
+import com.shahabkondri.chatgpt.shell.session.ConversationRepository;
+import com.shahabkondri.chatgpt.shell.session.MessageEntity;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.util.StringUtils;
+import reactor.core.Exceptions;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link ApplicationRunner} that sends the prompt of the one-shot mode to the ChatGPT
+ * API and streams the reply to the standard output. Errors are printed to the standard
+ * error and reflected in the exit code. If 'chat.one-shot.persist' is enabled, the prompt
+ * and the reply are stored as a new conversation.
+ *
+ * @author Shahab Kondri
+ */
+public class OneShotRunner implements ApplicationRunner, ExitCodeGenerator {
+
+	private static final String STANDARD_INPUT = "-";
+
+	private static final int EXIT_FAILURE = 1;
+
+	private static final int EXIT_USAGE = 2;
+
+	private final CompletionService completionService;
+
+	private final ChatGptProperties chatGptProperties;
+
+	private final OneShotProperties oneShotProperties;
+
+	private final ObjectProvider<ConversationRepository> conversationRepository;
+
+	private int exitCode;
+
+	/**
+	 * Constructs a new OneShotRunner.
+	 * @param completionService The service for sending requests to the ChatGPT API.
+	 * @param chatGptProperties The properties for the ChatGPT API.
+	 * @param oneShotProperties The properties of the one-shot mode.
+	 * @param conversationRepository The repository for storing the conversation, only
+	 * available if persistence is enabled.
+	 */
+	public OneShotRunner(CompletionService completionService, ChatGptProperties chatGptProperties,
+			OneShotProperties oneShotProperties, ObjectProvider<ConversationRepository> conversationRepository) {
+		this.completionService = completionService;
+		this.chatGptProperties = chatGptProperties;
+		this.oneShotProperties = oneShotProperties;
+		this.conversationRepository = conversationRepository;
+	}
+
+	/**
+	 * Sends the prompt given by the non-option arguments, or read from the standard input
+	 * if the only argument is {@code -}, and prints the streamed reply.
+	 * @param args The application arguments.
+	 */
+	@Override
+	public void run(ApplicationArguments args) {
+		String prompt = readPrompt(args.getNonOptionArgs());
+		if (!StringUtils.hasText(prompt)) {
+			System.err.println("No prompt given.");
+			exitCode = EXIT_USAGE;
+			return;
+		}
+
+		List<ChatGptRequest.Message> messages = new ArrayList<>(3);
+		if (StringUtils.hasLength(chatGptProperties.systemMessage())) {
+			messages.add(new ChatGptRequest.Message(MessageRole.SYSTEM, chatGptProperties.systemMessage()));
+		}
+		messages.add(new ChatGptRequest.Message(MessageRole.USER, prompt));
+
+		PrintStream out = System.out;
+		AtomicBoolean isFirstResultPrinted = new AtomicBoolean(false);
+		StringBuilder builder = new StringBuilder();
+		try {
+			completionService.stream(new ChatGptRequest(chatGptProperties.model(), messages))
+					.map(content -> ChatGptCommand.normalizeOutput(content, isFirstResultPrinted))
+					.timeout(chatGptProperties.idleTimeout()).doOnNext(content -> {
+						builder.append(content);
+						out.print(content);
+						out.flush();
+					}).blockLast();
+			out.println();
+		}
+		catch (RuntimeException ex) {
+			out.println();
+			Throwable cause = Exceptions.unwrap(ex);
+			System.err.println("Oops, something went wrong: "
+					+ ((cause.getMessage() != null) ? cause.getMessage() : cause.getClass().getSimpleName()));
+			exitCode = EXIT_FAILURE;
+			return;
+		}
+
+		if (oneShotProperties.persist()) {
+			messages.add(new ChatGptRequest.Message(MessageRole.ASSISTANT, builder.toString()));
+			storeConversation(prompt, messages);
+		}
+	}
+
+	@Override
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	private String readPrompt(List<String> nonOptionArgs) {
+		if (nonOptionArgs.size() == 1 && STANDARD_INPUT.equals(nonOptionArgs.get(0))) {
+			try {
+				return new String(System.in.readAllBytes(), StandardCharsets.UTF_8).strip();
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		return String.join(" ", nonOptionArgs);
+	}
+
+	/**
+	 * Stores the prompt and the reply as a new conversation, titled after the prompt.
+	 * @param prompt The prompt that was sent.
+	 * @param messages The messages of the conversation, including the reply.
+	 */
+	private void storeConversation(String prompt, List<ChatGptRequest.Message> messages) {
+		conversationRepository.ifAvailable(repository -> {
+			Conversation conversation = new Conversation();
+			conversation.setTitle(Conversation.deriveTitle(prompt));
+			conversation.setMessages(MessageEntity.toMessageEntities(messages, conversation));
+			repository.save(conversation);
+		});
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.configuration.ContextWindowProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Fits the conversation history into the context window of a text completion model. The
+ * system message is always kept, and the most recent messages are kept for as long as
+ * they fit into the token budget of the model. Older messages are left out of the
+ * request, but remain part of the conversation.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class ContextWindow {
+
+	private static final int DEFAULT_MAX_TOKENS = 4096;
+
+	private static final int GPT_4_MAX_TOKENS = 8192;
+
+	/**
+	 * The number of tokens every reply is primed with.
+	 */
+	private static final int REPLY_PRIMING_TOKENS = 3;
+
+	private final ContextWindowProperties contextWindowProperties;
+
+	private final TokenCounter tokenCounter;
+
+	/**
+	 * Constructs a new ContextWindow.
+	 * @param contextWindowProperties The properties that define the context window size
+	 * of each model.
+	 * @param tokenCounter The token counter used to measure messages.
+	 */
+	public ContextWindow(ContextWindowProperties contextWindowProperties, TokenCounter tokenCounter) {
+		this.contextWindowProperties = contextWindowProperties;
+		this.tokenCounter = tokenCounter;
+	}
+
+	/**
+	 * Returns the messages of the given history that fit into the token budget of the
+	 * given model, in their original order. System messages are always included, as is
+	 * the most recent message, even if it exceeds the budget on its own.
+	 * @param model The model the messages are sent to.
+	 * @param history The full conversation history, oldest message first.
+	 * @return A new list containing the messages to send.
+	 */
+	public List<ChatGptRequest.Message> fit(TextCompletionModel model, List<ChatGptRequest.Message> history) {
+		int budget = budget(model);
+		int used = REPLY_PRIMING_TOKENS;
+		for (ChatGptRequest.Message message : history) {
+			if (message.role() == MessageRole.SYSTEM) {
+				used += tokenCounter.count(message);
+			}
+		}
+
+		int firstIncluded = history.size();
+		ListIterator<ChatGptRequest.Message> iterator = history.listIterator(history.size());
+		while (iterator.hasPrevious()) {
+			ChatGptRequest.Message message = iterator.previous();
+			if (message.role() != MessageRole.SYSTEM) {
+				int tokens = tokenCounter.count(message);
+				if (used + tokens > budget && firstIncluded < history.size()) {
+					break;
+				}
+				used += tokens;
+				firstIncluded = iterator.nextIndex();
+			}
+		}
+
+		List<ChatGptRequest.Message> messages = new ArrayList<>();
+		int index = 0;
+		for (ChatGptRequest.Message message : history) {
+			if (index++ >= firstIncluded || message.role() == MessageRole.SYSTEM) {
+				messages.add(message);
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Returns the number of tokens the conversation history may take up in a request to
+	 * the given model, which is its context window size minus the tokens reserved for the
+	 * reply.
+	 * @param model The model the messages are sent to.
+	 * @return The token budget for the conversation history.
+	 */
+	public int budget(TextCompletionModel model) {
+		return maxTokens(model) - contextWindowProperties.reservedTokens();
+	}
+
+	private int maxTokens(TextCompletionModel model) {
+		Integer maxTokens = contextWindowProperties.maxTokens().get(model);
+		if (maxTokens != null) {
+			return maxTokens;
+		}
+		return (model == TextCompletionModel.GPT_4) ? GPT_4_MAX_TOKENS : DEFAULT_MAX_TOKENS;
+	}
+
+}
@@ -1,7 +1,10 @@
 package com.shahabkondri.chatgpt.shell.session;
 
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
 import jakarta.persistence.*;
+import org.springframework.util.StringUtils;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -12,6 +15,10 @@ import java.util.List;
 @Entity
 public class Conversation {
 
+	private static final int TITLE_MAX_WORDS = 5;
+
+	private static final int TITLE_MAX_LENGTH = 50;
+
 	/**
 	 * The unique identifier for the Conversation. It is automatically generated.
 	 */
@@ -26,11 +33,20 @@ public class Conversation {
 	private String title;
 
 	/**
-	 * A list of messages associated with the {@link Conversation}. Fetch type is
-	 * {@code EAGER}, meaning they are retrieved from the database as soon as the
-	 * {@link Conversation} is loaded.
+	 * The model that was active when the latest answer of the Conversation was generated,
+	 * which becomes the active model again when the Conversation is loaded. Conversations
+	 * stored before this field was introduced have no model.
+	 */
+	@Enumerated(EnumType.STRING)
+	private TextCompletionModel model;
+
+	/**
+	 * A list of messages associated with the {@link Conversation}, ordered by their ID.
+	 * Fetch type is {@code LAZY}, meaning they are only retrieved from the database when
+	 * they are accessed or explicitly fetched with the {@link Conversation}.
 	 */
-	@OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, mappedBy = "conversation")
+	@OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, mappedBy = "conversation")
+	@OrderBy("id")
 	private List<MessageEntity> messages;
 
 	/**
@@ -65,6 +81,22 @@ public class Conversation {
 		this.title = title;
 	}
 
+	/**
+	 * Returns the model that was active at the latest answer of the Conversation.
+	 * @return The model, or {@code null} if it is unknown.
+	 */
+	public TextCompletionModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Sets the model that was active at the latest answer of the Conversation.
+	 * @param model The model to be set.
+	 */
+	public void setModel(TextCompletionModel model) {
+		this.model = model;
+	}
+
 	/**
 	 * Returns the list of messages associated with the Conversation.
 	 * @return A list of MessageEntity objects.
@@ -82,4 +114,19 @@ public class Conversation {
 		this.messages = messages;
 	}
 
+	/**
+	 * Derives a conversation title locally from the user's first prompt by keeping its
+	 * first few words. Used as the title until one is generated by the API.
+	 * @param firstPrompt The user's first prompt in the conversation.
+	 * @return The derived title, never empty.
+	 */
+	public static String deriveTitle(String firstPrompt) {
+		String[] words = firstPrompt.strip().split("\\s+", TITLE_MAX_WORDS + 1);
+		String title = String.join(" ", Arrays.copyOf(words, Math.min(words.length, TITLE_MAX_WORDS)));
+		if (title.length() > TITLE_MAX_LENGTH) {
+			title = title.substring(0, TITLE_MAX_LENGTH).strip();
+		}
+		return StringUtils.hasText(title) ? title : "Untitled conversation";
+	}
+
 }
@@ -0,0 +1,339 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import com.shahabkondri.chatgpt.shell.configuration.PersistenceProperties;
+import jakarta.persistence.EntityManager;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports stored conversations to a JSON lines file and imports them back, without
+ * holding more than a batch of messages in memory. Each line is either a conversation,
+ * followed by the lines of its messages in order:
+ * <pre>
+ * {"type":"conversation","id":1,"title":"The CAP theorem","model":"GPT_4"}
+ * {"type":"message","conversation":1,"role":"USER","content":"...","createdAt":"..."}
+ * </pre>
+ * Files whose name ends with {@code .gz} are compressed with gzip. The export reads the
+ * database with a forward-only JDBC cursor; the import persists the lines in batches of
+ * the configured persistence batch size, one transaction per batch, clearing the
+ * persistence context after each one. Imported conversations get new IDs.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+@RegisterReflectionForBinding(ConversationArchive.ArchiveLine.class)
+public class ConversationArchive {
+
+	private static final String CONVERSATION = "conversation";
+
+	private static final String MESSAGE = "message";
+
+	private static final String GZIP_EXTENSION = ".gz";
+
+	private static final String EXPORT_QUERY = "SELECT c.id, c.title, c.model AS conversation_model, "
+			+ "m.role, m.content, m.created_at, m.truncated, m.model AS message_model "
+			+ "FROM conversation c LEFT JOIN message_entity m ON m.conversation_id = c.id ORDER BY c.id, m.id";
+
+	private static final int FETCH_SIZE = 500;
+
+	private static final long PROGRESS_INTERVAL = 10_000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final EntityManager entityManager;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final PersistenceProperties persistenceProperties;
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * Constructs a new ConversationArchive.
+	 * @param jdbcTemplate The JDBC template whose data source is read by the export.
+	 * @param entityManager The entity manager that persists imported conversations.
+	 * @param transactionTemplate The template for the transaction of each imported batch.
+	 * @param persistenceProperties The properties that define the size of imported
+	 * batches.
+	 * @param objectMapper The object mapper for writing and reading lines.
+	 */
+	public ConversationArchive(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+			TransactionTemplate transactionTemplate, PersistenceProperties persistenceProperties,
+			ObjectMapper objectMapper) {
+		this.jdbcTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+		this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+		this.entityManager = entityManager;
+		this.transactionTemplate = transactionTemplate;
+		this.persistenceProperties = persistenceProperties;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Writes all stored conversations and their messages to the given file, replacing it
+	 * if it exists.
+	 * @param file The file to write, compressed if its name ends with {@code .gz}.
+	 * @param progressListener Notified every 10,000 lines.
+	 * @return The number of exported conversations and messages.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public Progress exportTo(Path file, Consumer<Progress> progressListener) throws IOException {
+		// Waits for JPA, bootstrapped on the application task executor, to create the tables
+		entityManager.getMetamodel();
+		Tally tally = new Tally();
+		try (BufferedWriter writer = newWriter(file)) {
+			jdbcTemplate.query(EXPORT_QUERY, rs -> {
+				long conversationId = rs.getLong("id");
+				if (tally.conversations == 0 || conversationId != tally.conversationId) {
+					write(writer, new ArchiveLine(CONVERSATION, conversationId, rs.getString("title"), null, null,
+							null, null, null, model(rs.getString("conversation_model"))));
+					tally.conversation(conversationId, progressListener);
+				}
+				String role = rs.getString("role");
+				if (role != null) {
+					Timestamp createdAt = rs.getTimestamp("created_at");
+					write(writer, new ArchiveLine(MESSAGE, null, null, conversationId, MessageRole.valueOf(role),
+							rs.getString("content"), (createdAt != null) ? createdAt.toInstant() : null,
+							rs.getBoolean("truncated") ? Boolean.TRUE : null, model(rs.getString("message_model"))));
+					tally.message(progressListener);
+				}
+			});
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		return tally.progress();
+	}
+
+	/**
+	 * Reads the conversations and messages of the given file and stores them as new
+	 * conversations. Batches that were stored before an invalid line or an error are
+	 * kept.
+	 * @param file The file to read, compressed if its name ends with {@code .gz}.
+	 * @param progressListener Notified every 10,000 lines.
+	 * @return The number of imported conversations and messages.
+	 * @throws IOException If the file cannot be read.
+	 * @throws IllegalArgumentException If a line is not a valid conversation or message.
+	 */
+	public Progress importFrom(Path file, Consumer<Progress> progressListener) throws IOException {
+		Tally tally = new Tally();
+		Long sourceConversationId = null;
+		List<ArchiveLine> batch = new ArrayList<>(persistenceProperties.batchSize());
+		try (BufferedReader reader = newReader(file)) {
+			long lineNumber = 0;
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				lineNumber++;
+				if (!StringUtils.hasText(line)) {
+					continue;
+				}
+				ArchiveLine archiveLine = parse(line, lineNumber);
+				if (CONVERSATION.equals(archiveLine.type())) {
+					sourceConversationId = archiveLine.id();
+				}
+				else if (sourceConversationId == null || !sourceConversationId.equals(archiveLine.conversation())) {
+					throw new IllegalArgumentException(
+							"Line " + lineNumber + ": message does not follow its conversation");
+				}
+				batch.add(archiveLine);
+				if (batch.size() == persistenceProperties.batchSize()) {
+					importBatch(batch, tally, progressListener);
+					batch.clear();
+				}
+			}
+		}
+		importBatch(batch, tally, progressListener);
+		return tally.progress();
+	}
+
+	/**
+	 * Persists a batch of lines in one transaction and clears the persistence context, so
+	 * that the imported entities do not pile up in memory.
+	 * @param batch The lines to persist, in file order.
+	 * @param tally The counts of the import, which also track the current conversation.
+	 * @param progressListener The listener of the import progress.
+	 */
+	private void importBatch(List<ArchiveLine> batch, Tally tally, Consumer<Progress> progressListener) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			for (ArchiveLine line : batch) {
+				if (CONVERSATION.equals(line.type())) {
+					Conversation conversation = new Conversation();
+					conversation.setTitle(line.title());
+					conversation.setModel(line.model());
+					entityManager.persist(conversation);
+					tally.conversation(conversation.getId(), progressListener);
+				}
+				else {
+					MessageEntity messageEntity = new MessageEntity(line.role(), line.content(),
+							entityManager.getReference(Conversation.class, tally.conversationId));
+					messageEntity.setCreatedAt(line.createdAt());
+					messageEntity.setTruncated(Boolean.TRUE.equals(line.truncated()));
+					messageEntity.setModel(line.model());
+					entityManager.persist(messageEntity);
+					tally.message(progressListener);
+				}
+			}
+			entityManager.flush();
+			entityManager.clear();
+		});
+	}
+
+	private ArchiveLine parse(String line, long lineNumber) {
+		ArchiveLine archiveLine;
+		try {
+			archiveLine = objectMapper.readValue(line, ArchiveLine.class);
+		}
+		catch (JsonProcessingException ex) {
+			throw new IllegalArgumentException("Line " + lineNumber + ": " + ex.getOriginalMessage(), ex);
+		}
+		boolean valid = switch (Objects.requireNonNullElse(archiveLine.type(), "")) {
+			case CONVERSATION -> archiveLine.id() != null && StringUtils.hasText(archiveLine.title());
+			case MESSAGE -> archiveLine.role() != null && archiveLine.content() != null;
+			default -> false;
+		};
+		if (!valid) {
+			throw new IllegalArgumentException("Line " + lineNumber + ": not a valid conversation or message");
+		}
+		return archiveLine;
+	}
+
+	private void write(BufferedWriter writer, ArchiveLine line) {
+		try {
+			writer.write(objectMapper.writeValueAsString(line));
+			writer.newLine();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static TextCompletionModel model(String name) {
+		return (name != null) ? TextCompletionModel.valueOf(name) : null;
+	}
+
+	private static BufferedWriter newWriter(Path file) throws IOException {
+		OutputStream out = Files.newOutputStream(file);
+		if (isCompressed(file)) {
+			out = new GZIPOutputStream(out);
+		}
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	private static BufferedReader newReader(Path file) throws IOException {
+		InputStream in = Files.newInputStream(file);
+		if (isCompressed(file)) {
+			in = new GZIPInputStream(in);
+		}
+		return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+	}
+
+	private static boolean isCompressed(Path file) {
+		return file.getFileName().toString().endsWith(GZIP_EXTENSION);
+	}
+
+	/**
+	 * The progress of an export or import.
+	 * @param conversations The number of conversations processed so far.
+	 * @param messages The number of messages processed so far.
+	 * @param elapsed The time elapsed since the start.
+	 */
+	public record Progress(long conversations, long messages, Duration elapsed) {
+
+		/**
+		 * Returns the throughput so far.
+		 * @return The number of messages processed per second.
+		 */
+		public long messagesPerSecond() {
+			long millis = elapsed.toMillis();
+			return (millis > 0) ? messages * 1000 / millis : messages;
+		}
+
+	}
+
+	/**
+	 * A line of an exported file: a conversation, or a message of the conversation before
+	 * it.
+	 * @param type Either {@code conversation} or {@code message}.
+	 * @param id The ID of the conversation in the exporting database.
+	 * @param title The title of the conversation.
+	 * @param conversation The ID of the conversation of the message.
+	 * @param role The role of the message.
+	 * @param content The content of the message.
+	 * @param createdAt The creation time of the message, if known.
+	 * @param truncated {@code true} if the message is a truncated answer, omitted
+	 * otherwise.
+	 * @param model The model that was active at the latest answer of the conversation, or
+	 * the model that generated the message, if known.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	record ArchiveLine(String type, Long id, String title, Long conversation, MessageRole role, String content,
+			Instant createdAt, Boolean truncated, TextCompletionModel model) {
+	}
+
+	/**
+	 * Counts the processed lines and notifies the progress listener at regular intervals.
+	 */
+	private static final class Tally {
+
+		private final long start = System.nanoTime();
+
+		private long conversations;
+
+		private long messages;
+
+		private long conversationId;
+
+		void conversation(long conversationId, Consumer<Progress> progressListener) {
+			this.conversationId = conversationId;
+			conversations++;
+			report(progressListener);
+		}
+
+		void message(Consumer<Progress> progressListener) {
+			messages++;
+			report(progressListener);
+		}
+
+		Progress progress() {
+			return new Progress(conversations, messages, Duration.ofNanos(System.nanoTime() - start));
+		}
+
+		private void report(Consumer<Progress> progressListener) {
+			if ((conversations + messages) % PROGRESS_INTERVAL == 0) {
+				progressListener.accept(progress());
+			}
+		}
+
+	}
+
+}
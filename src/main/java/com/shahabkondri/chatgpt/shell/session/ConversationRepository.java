@@ -1,7 +1,17 @@
 package com.shahabkondri.chatgpt.shell.session;
 
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
 
 /**
  * Repository for performing CRUD operations on {@link Conversation} instances.
@@ -11,4 +21,51 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
 
+	/**
+	 * Finds a page of {@link ConversationSummary conversation summaries}. Only the ID,
+	 * title, message count and last update time of each conversation are read; their
+	 * messages are not loaded.
+	 * @param pageable The page to be returned.
+	 * @return A page of ConversationSummary instances.
+	 */
+	@Query(value = "select c.id as id, c.title as title, count(m) as messageCount, max(m.createdAt) as lastUpdated "
+			+ "from Conversation c left join c.messages m group by c.id, c.title",
+			countQuery = "select count(c) from Conversation c")
+	Page<ConversationSummary> findSummaries(Pageable pageable);
+
+	/**
+	 * Finds a {@link Conversation} by its ID and fetches its messages along with it.
+	 * @param id The ID of the Conversation.
+	 * @return An Optional containing the Conversation with its messages if found, or an
+	 * empty Optional if not found.
+	 */
+	@EntityGraph(attributePaths = "messages")
+	Optional<Conversation> findWithMessagesById(Long id);
+
+	/**
+	 * Updates the title of a {@link Conversation} without loading or merging its
+	 * messages.
+	 * @param id The ID of the Conversation to update.
+	 * @param title The new title of the Conversation.
+	 * @return The number of updated conversations, 0 if no conversation exists with the
+	 * given ID.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update Conversation c set c.title = :title where c.id = :id")
+	int updateTitle(@Param("id") Long id, @Param("title") String title);
+
+	/**
+	 * Updates the model of a {@link Conversation} without loading or merging its
+	 * messages.
+	 * @param id The ID of the Conversation to update.
+	 * @param model The model that was active at the latest answer of the Conversation.
+	 * @return The number of updated conversations, 0 if no conversation exists with the
+	 * given ID.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update Conversation c set c.model = :model where c.id = :id")
+	int updateModel(@Param("id") Long id, @Param("model") TextCompletionModel model);
+
 }
@@ -0,0 +1,38 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import java.time.Instant;
+
+/**
+ * A read-only projection of a {@link Conversation} used for listing conversations without
+ * loading their messages.
+ *
+ * @author Shahab Kondri
+ */
+public interface ConversationSummary {
+
+	/**
+	 * Returns the ID of the Conversation.
+	 * @return The unique identifier of the Conversation.
+	 */
+	Long getId();
+
+	/**
+	 * Returns the title of the Conversation.
+	 * @return The title of the Conversation.
+	 */
+	String getTitle();
+
+	/**
+	 * Returns the number of messages stored for the Conversation.
+	 * @return The number of messages, including the system message.
+	 */
+	long getMessageCount();
+
+	/**
+	 * Returns the creation time of the most recent message of the Conversation.
+	 * @return The time the Conversation was last updated, or {@code null} if it is
+	 * unknown.
+	 */
+	Instant getLastUpdated();
+
+}
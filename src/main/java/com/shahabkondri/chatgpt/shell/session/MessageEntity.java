@@ -2,8 +2,10 @@ package com.shahabkondri.chatgpt.shell.session;
 
 import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
 import com.shahabkondri.chatgpt.api.model.MessageRole;
+import com.shahabkondri.chatgpt.api.model.TextCompletionModel;
 import jakarta.persistence.*;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -14,6 +16,7 @@ import java.util.stream.Collectors;
  * @author Shahab Kondri
  */
 @Entity
+@Table(indexes = @Index(name = "idx_message_conversation_id", columnList = "conversation_id, id"))
 public class MessageEntity {
 
 	/**
@@ -46,6 +49,27 @@ public class MessageEntity {
 	@ManyToOne(optional = false)
 	private Conversation conversation;
 
+	/**
+	 * Represents the time the message was created. Messages stored before this field was
+	 * introduced have no creation time.
+	 */
+	@Column(updatable = false)
+	private Instant createdAt;
+
+	/**
+	 * Whether the message is an answer that was cancelled before it was complete. The
+	 * column defaults to {@code false} for messages stored before it was introduced.
+	 */
+	@Column(columnDefinition = "BOOLEAN DEFAULT FALSE")
+	private boolean truncated;
+
+	/**
+	 * The model that generated the message, for answers. Messages of other roles, and
+	 * answers stored before this field was introduced, have no model.
+	 */
+	@Enumerated(EnumType.STRING)
+	private TextCompletionModel model;
+
 	/**
 	 * Default constructor
 	 */
@@ -63,6 +87,7 @@ public class MessageEntity {
 		this.role = role;
 		this.content = content;
 		this.conversation = conversation;
+		this.createdAt = Instant.now();
 	}
 
 	/**
@@ -129,6 +154,55 @@ public class MessageEntity {
 		this.conversation = conversation;
 	}
 
+	/**
+	 * Returns the time this message was created.
+	 * @return The creation time of this message, or {@code null} if it is unknown.
+	 */
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * Sets the creation time of this message.
+	 * @param createdAt The creation time to be set.
+	 */
+	public void setCreatedAt(Instant createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	/**
+	 * Returns whether this message was cancelled before it was complete.
+	 * @return {@code true} if this message is a truncated answer.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Sets whether this message was cancelled before it was complete.
+	 * @param truncated Whether this message is a truncated answer.
+	 */
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+	/**
+	 * Returns the model that generated this message.
+	 * @return The model of this answer, or {@code null} if it is unknown or this is not
+	 * an answer.
+	 */
+	public TextCompletionModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Sets the model that generated this message.
+	 * @param model The model to be set.
+	 */
+	public void setModel(TextCompletionModel model) {
+		this.model = model;
+	}
+
 	/**
 	 * Converts a {@link ChatGptRequest.Message} and a {@link Conversation} to a
 	 * {@link MessageEntity}.
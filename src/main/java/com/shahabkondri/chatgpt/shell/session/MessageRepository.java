@@ -1,9 +1,12 @@
 package com.shahabkondri.chatgpt.shell.session;
 
 import com.shahabkondri.chatgpt.api.model.MessageRole;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -24,4 +27,25 @@ public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
 	 */
 	Optional<MessageEntity> findByConversationAndRole(Conversation conversation, MessageRole messageRole);
 
+	/**
+	 * Finds the messages of a {@link Conversation} that precede the given message ID,
+	 * newest first. Walking a conversation backwards with the ID of the oldest message
+	 * found so far reads only the rows of each window, however long the conversation is.
+	 * @param conversationId The ID of the Conversation to which the messages belong.
+	 * @param beforeId The exclusive upper bound of the message IDs,
+	 * {@link Long#MAX_VALUE} for the most recent messages.
+	 * @param pageable The size of the window, its page number should be 0.
+	 * @return The messages of the window, newest first.
+	 */
+	List<MessageEntity> findByConversationIdAndIdLessThanOrderByIdDesc(Long conversationId, Long beforeId,
+			Pageable pageable);
+
+	/**
+	 * Finds a slice of the messages of a {@link Conversation}, without counting them.
+	 * @param conversationId The ID of the Conversation to which the messages belong.
+	 * @param pageable The page and sort order of the slice.
+	 * @return A slice of the messages.
+	 */
+	Slice<MessageEntity> findByConversationId(Long conversationId, Pageable pageable);
+
 }
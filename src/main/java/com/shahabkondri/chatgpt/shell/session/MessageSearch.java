@@ -0,0 +1,180 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.shahabkondri.chatgpt.api.model.MessageRole;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Searches the content of stored messages with the native full-text index of H2. The
+ * index is created over {@code MESSAGE_ENTITY.CONTENT} the first time a search is run,
+ * indexing the messages stored so far, and is kept up to date by H2 triggers as messages
+ * are inserted, updated or deleted. H2 returns the messages that contain all search
+ * terms; all of them are ranked in the same query by how many of the terms they contain
+ * and how often, newest first among equal scores, so that only the best matches are read,
+ * and a snippet around the first match is extracted for display.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class MessageSearch {
+
+	private static final String SCHEMA = "PUBLIC";
+
+	private static final String TABLE = "MESSAGE_ENTITY";
+
+	private static final String COLUMN = "CONTENT";
+
+	/**
+	 * Finds all messages matching the query, with their lower case content and length for
+	 * scoring. A limit of 0 returns all matches of the full-text index.
+	 */
+	private static final String CANDIDATES_QUERY = "SELECT m.id, m.conversation_id, m.role, m.content, c.title, "
+			+ "LOWER(m.content) AS lower_content, CHAR_LENGTH(m.content) AS content_length "
+			+ "FROM FT_SEARCH_DATA(:query, 0, 0) ft "
+			+ "JOIN message_entity m ON m.id = CAST(ft.KEYS[1] AS BIGINT) "
+			+ "JOIN conversation c ON c.id = m.conversation_id WHERE ft.\"TABLE\" = :table";
+
+	private static final int SNIPPET_CONTEXT = 60;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final EntityManagerFactory entityManagerFactory;
+
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	private volatile boolean indexReady;
+
+	/**
+	 * Constructs a new MessageSearch.
+	 * @param jdbcTemplate The JDBC template for managing and querying the full-text
+	 * index.
+	 * @param entityManagerFactory The entity manager factory that creates the schema.
+	 */
+	public MessageSearch(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.entityManagerFactory = entityManagerFactory;
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+	}
+
+	/**
+	 * Searches stored messages for the given terms.
+	 * @param terms The search terms. Only messages containing all terms are found.
+	 * @param limit The maximum number of results.
+	 * @return The results, best match first.
+	 */
+	public List<Hit> search(String terms, int limit) {
+		List<String> words = Arrays.stream(terms.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+				.filter(word -> !word.isEmpty()).distinct().toList();
+		if (words.isEmpty()) {
+			return List.of();
+		}
+
+		ensureIndex();
+		MapSqlParameterSource parameters = new MapSqlParameterSource("query", String.join(" ", words))
+				.addValue("table", TABLE).addValue("limit", limit);
+		for (int index = 0; index < words.size(); index++) {
+			parameters.addValue("word" + index, words.get(index));
+		}
+		return namedParameterJdbcTemplate.query(rankingQuery(words.size()), parameters,
+				(rs, rowNum) -> toHit(rs, words));
+	}
+
+	/**
+	 * Builds the query that scores every candidate and returns the best ones. A message
+	 * scores one point per term it contains, plus {@code 1 + ln(occurrences)} per term,
+	 * divided by {@code 1 + ln(1 + length)} so that long messages do not win by length
+	 * alone.
+	 * @param words The number of search terms, bound as {@code :word0, :word1, ...}.
+	 * @return The query.
+	 */
+	private static String rankingQuery(int words) {
+		StringBuilder occurrences = new StringBuilder();
+		StringBuilder matched = new StringBuilder("0");
+		StringBuilder weights = new StringBuilder("0");
+		for (int index = 0; index < words; index++) {
+			String word = ":word" + index;
+			String count = "n" + index;
+			occurrences.append(", (CHAR_LENGTH(lower_content) - CHAR_LENGTH(REPLACE(lower_content, ").append(word)
+					.append(", ''))) / CHAR_LENGTH(").append(word).append(") AS ").append(count);
+			matched.append(" + CASE WHEN ").append(count).append(" > 0 THEN 1 ELSE 0 END");
+			weights.append(" + CASE WHEN ").append(count).append(" > 0 THEN 1 + LN(").append(count)
+					.append(") ELSE 0 END");
+		}
+		return "SELECT id, conversation_id, role, content, title, (" + matched + ") + (" + weights
+				+ ") / (1 + LN(1 + content_length)) AS score FROM (SELECT id, conversation_id, role, content, title, "
+				+ "content_length" + occurrences + " FROM (" + CANDIDATES_QUERY + ") candidates) counted "
+				+ "ORDER BY score DESC, id DESC LIMIT :limit";
+	}
+
+	/**
+	 * Initializes the full-text search of H2 and creates the index over the message
+	 * content, unless it already exists.
+	 */
+	private synchronized void ensureIndex() {
+		if (indexReady) {
+			return;
+		}
+		// Waits for JPA, bootstrapped on the application task executor, to create the message table
+		entityManagerFactory.getMetamodel();
+		jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS FT_INIT FOR \"org.h2.fulltext.FullText.init\"");
+		jdbcTemplate.execute("CALL FT_INIT()");
+		Integer indexes = jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM FT.INDEXES WHERE \"SCHEMA\" = ? AND \"TABLE\" = ?", Integer.class, SCHEMA,
+				TABLE);
+		if (indexes == null || indexes == 0) {
+			jdbcTemplate.update("CALL FT_CREATE_INDEX(?, ?, ?)", SCHEMA, TABLE, COLUMN);
+		}
+		indexReady = true;
+	}
+
+	private static Hit toHit(ResultSet rs, List<String> words) throws SQLException {
+		String content = rs.getString("content");
+		String lowerCaseContent = content.toLowerCase(Locale.ROOT);
+		int firstMatch = -1;
+		for (String word : words) {
+			int index = lowerCaseContent.indexOf(word);
+			if (index >= 0 && (firstMatch < 0 || index < firstMatch)) {
+				firstMatch = index;
+			}
+		}
+		return new Hit(rs.getLong("id"), rs.getLong("conversation_id"), rs.getString("title"),
+				MessageRole.valueOf(rs.getString("role")), snippet(content, Math.max(firstMatch, 0)),
+				rs.getDouble("score"));
+	}
+
+	/**
+	 * Extracts the text around the given position, on a single line.
+	 * @param content The content of the message.
+	 * @param position The position of the first match.
+	 * @return The snippet.
+	 */
+	private static String snippet(String content, int position) {
+		int start = Math.max(0, position - SNIPPET_CONTEXT);
+		int end = Math.min(content.length(), position + SNIPPET_CONTEXT);
+		String snippet = content.substring(start, end).replaceAll("\\s+", " ").strip();
+		return ((start > 0) ? "..." : "") + snippet + ((end < content.length()) ? "..." : "");
+	}
+
+	/**
+	 * A message that matches a search.
+	 * @param messageId The ID of the message.
+	 * @param conversationId The ID of the conversation of the message.
+	 * @param title The title of the conversation.
+	 * @param role The role of the message.
+	 * @param snippet The text around the first match.
+	 * @param score The relevance of the message, higher is better.
+	 */
+	public record Hit(long messageId, long conversationId, String title, MessageRole role, String snippet,
+			double score) {
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.shahabkondri.chatgpt.shell.configuration.PersistenceProperties;
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues {@link MessageEntity} writes and persists them behind the conversation, so that
+ * saving a turn does not keep the user waiting on the database. Pending messages are
+ * written in batches, one transaction per batch, either when the configured flush
+ * interval elapses or as soon as a full batch is pending. All pending messages are
+ * flushed when the application shuts down.
+ * <p>
+ * A batch that cannot be written is saved again message by message, so that a message
+ * that can never be written, for example because its conversation has been deleted in the
+ * meantime, is dropped on its own. A message that fails with a transient error, such as a
+ * lock timeout, is put back at the head of the queue together with the rest of its batch
+ * and written with the next flush. Failures are logged and recorded by
+ * {@link ChatMetrics}.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class MessageWriteBehindQueue implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(MessageWriteBehindQueue.class);
+
+	private final MessageRepository messageRepository;
+
+	private final PersistenceProperties persistenceProperties;
+
+	private final ChatMetrics chatMetrics;
+
+	private final BlockingDeque<MessageEntity> pendingMessages = new LinkedBlockingDeque<>();
+
+	private final ScheduledExecutorService flushExecutorService;
+
+	/**
+	 * Constructs a new MessageWriteBehindQueue and schedules the periodic flush of
+	 * pending messages.
+	 * @param messageRepository The repository for storing messages.
+	 * @param persistenceProperties The properties that control the flush interval and
+	 * batch size.
+	 * @param chatMetrics The metrics that record the time spent writing messages and the
+	 * failed writes.
+	 */
+	public MessageWriteBehindQueue(MessageRepository messageRepository, PersistenceProperties persistenceProperties,
+			ChatMetrics chatMetrics) {
+		this.messageRepository = messageRepository;
+		this.persistenceProperties = persistenceProperties;
+		this.chatMetrics = chatMetrics;
+		this.flushExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "message-write-behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long flushInterval = persistenceProperties.flushInterval().toMillis();
+		flushExecutorService.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues the given message to be persisted with the next batch. If write-behind is
+	 * disabled, the message is saved right away.
+	 * @param messageEntity The {@link MessageEntity} to persist. Its conversation must
+	 * already be stored.
+	 */
+	public void enqueue(MessageEntity messageEntity) {
+		if (!persistenceProperties.writeBehind()) {
+			long start = System.nanoTime();
+			messageRepository.save(messageEntity);
+			chatMetrics.recordDatabaseWrite("message", System.nanoTime() - start);
+			return;
+		}
+		pendingMessages.add(messageEntity);
+		if (pendingMessages.size() >= persistenceProperties.batchSize()) {
+			flushExecutorService.execute(this::flushQuietly);
+		}
+	}
+
+	/**
+	 * Persists all pending messages in batches of the configured size and waits for them
+	 * to be written. This should be called before reading or deleting messages that may
+	 * still be pending.
+	 * @throws TransientDataAccessException If messages could not be written because of a
+	 * transient error. They stay queued for the next flush.
+	 */
+	public synchronized void flush() {
+		List<MessageEntity> batch = new ArrayList<>(persistenceProperties.batchSize());
+		while (pendingMessages.drainTo(batch, persistenceProperties.batchSize()) > 0) {
+			long start = System.nanoTime();
+			try {
+				messageRepository.saveAll(batch);
+				chatMetrics.recordDatabaseWrite("batch", System.nanoTime() - start);
+			}
+			catch (RuntimeException ex) {
+				chatMetrics.recordError(ex);
+				logger.warn("Failed to write a batch of " + batch.size() + " messages, saving them one by one", ex);
+				saveOneByOne(batch);
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Saves the messages of a batch that failed one at a time. Messages that cannot be
+	 * written are dropped, unless the error is transient, in which case the message and
+	 * the rest of the batch are put back at the head of the queue, in order.
+	 * @param batch The messages of the failed batch.
+	 */
+	private void saveOneByOne(List<MessageEntity> batch) {
+		for (int index = 0; index < batch.size(); index++) {
+			MessageEntity messageEntity = batch.get(index);
+			// The rolled back batch may have assigned an identifier that was never stored
+			messageEntity.setId(null);
+			long start = System.nanoTime();
+			try {
+				messageRepository.save(messageEntity);
+				chatMetrics.recordDatabaseWrite("message", System.nanoTime() - start);
+			}
+			catch (TransientDataAccessException | RecoverableDataAccessException ex) {
+				chatMetrics.recordError(ex);
+				for (int pending = batch.size() - 1; pending >= index; pending--) {
+					MessageEntity requeued = batch.get(pending);
+					requeued.setId(null);
+					pendingMessages.addFirst(requeued);
+				}
+				throw ex;
+			}
+			catch (RuntimeException ex) {
+				chatMetrics.recordError(ex);
+				chatMetrics.recordDroppedMessage();
+				logger.error("Dropped a message of conversation " + messageEntity.getConversation().getId()
+						+ " that cannot be written", ex);
+			}
+		}
+	}
+
+	/**
+	 * Flushes pending messages from the background thread. Messages that failed with a
+	 * transient error stay queued and are written with the next flush.
+	 */
+	private void flushQuietly() {
+		try {
+			flush();
+		}
+		catch (RuntimeException ex) {
+			logger.warn("Failed to write the pending messages, retrying with the next flush", ex);
+		}
+	}
+
+	/**
+	 * Stops the periodic flush and persists all messages that are still pending.
+	 */
+	@Override
+	public void destroy() {
+		flushExecutorService.shutdown();
+		flush();
+	}
+
+}
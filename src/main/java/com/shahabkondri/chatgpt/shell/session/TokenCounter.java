@@ -0,0 +1,54 @@
+package com.shahabkondri.chatgpt.shell.session;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.shahabkondri.chatgpt.api.model.ChatGptRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Counts the tokens of chat messages locally, using the {@code cl100k_base} encoding of
+ * the GPT-3.5 and GPT-4 models. The token count of each message is computed once and kept
+ * for as long as the message is referenced.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class TokenCounter {
+
+	/**
+	 * The number of tokens every message adds on top of its content, for its role and
+	 * delimiters.
+	 */
+	private static final int TOKENS_PER_MESSAGE = 4;
+
+	private final Encoding encoding = Encodings.newDefaultEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+	private final Map<ChatGptRequest.Message, Integer> messageTokens = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Counts the tokens the given message takes up in a request, including its role and
+	 * delimiters.
+	 * @param message The message to count.
+	 * @return The number of tokens of the message.
+	 */
+	public int count(ChatGptRequest.Message message) {
+		return messageTokens.computeIfAbsent(message, m -> TOKENS_PER_MESSAGE + count(m.content()));
+	}
+
+	/**
+	 * Counts the tokens of the given text. Special tokens, such as
+	 * {@code <|endoftext|>}, are counted as ordinary text, which is how the API receives
+	 * them in a message.
+	 * @param text The text to count.
+	 * @return The number of tokens of the text, 0 if the text is {@code null}.
+	 */
+	public int count(String text) {
+		return (text != null) ? encoding.countTokensOrdinary(text) : 0;
+	}
+
+}
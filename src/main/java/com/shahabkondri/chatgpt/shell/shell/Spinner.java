@@ -1,17 +1,18 @@
 package com.shahabkondri.chatgpt.shell.shell;
 
+import org.jline.terminal.Terminal;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides a simple text-based spinner for the terminal. The spinner is used to indicate
- * that a background task is in progress, such as loading or processing data.
+ * that a background task is in progress, such as loading or processing data. Frames are
+ * rendered on the shared shell scheduler through the {@link StreamRenderer}, so they
+ * never interleave with streamed text. The spinner is not rendered at all when the output
+ * is not an interactive terminal.
  *
  * @author Shahab Kondri
  */
@@ -22,51 +23,63 @@ public class Spinner {
 
 	private static final long SPINNER_SCHEDULER_PERIOD = 100;
 
-	private final AtomicBoolean isSpinnerRunning = new AtomicBoolean(false);
+	private final StreamRenderer streamRenderer;
 
-	private final TerminalPrinter terminalPrinter;
+	private final ScheduledExecutorService shellScheduler;
 
-	private ScheduledExecutorService spinnerExecutorService;
+	private final boolean interactive;
 
 	private ScheduledFuture<?> scheduledFuture;
 
+	private int frameIndex;
+
 	/**
-	 * Constructs a new Spinner instance with the specified terminal printer.
-	 * @param terminalPrinter The terminal printer for displaying the spinner in the
-	 * terminal.
+	 * Constructs a new Spinner instance.
+	 * @param streamRenderer The renderer for displaying the spinner in the terminal.
+	 * @param shellScheduler The shared scheduler that renders the spinner frames.
+	 * @param terminal The terminal, used to detect whether the output is interactive.
 	 */
-	public Spinner(TerminalPrinter terminalPrinter) {
-		this.terminalPrinter = terminalPrinter;
+	public Spinner(StreamRenderer streamRenderer, ScheduledExecutorService shellScheduler, Terminal terminal) {
+		this.streamRenderer = streamRenderer;
+		this.shellScheduler = shellScheduler;
+		this.interactive = isInteractive(terminal);
 	}
 
 	/**
 	 * Starts the spinner animation in the terminal, indicating that a background task is
-	 * in progress. If the spinner is already running, this method has no effect.
+	 * in progress. If the spinner is already running, or the output is not an interactive
+	 * terminal, this method has no effect.
 	 */
-	public void startSpinner() {
-		if (isSpinnerRunning.compareAndSet(false, true)) {
-			spinnerExecutorService = Executors.newSingleThreadScheduledExecutor();
-			AtomicInteger index = new AtomicInteger(0);
-			scheduledFuture = spinnerExecutorService.scheduleAtFixedRate(() -> {
-				if (isSpinnerRunning.get()) {
-					int i = index.getAndIncrement() % SPINNER_FRAMES.length;
-					terminalPrinter.print("\r" + SPINNER_FRAMES[i]);
-				}
-			}, 0, SPINNER_SCHEDULER_PERIOD, TimeUnit.MILLISECONDS);
+	public synchronized void startSpinner() {
+		if (interactive && scheduledFuture == null) {
+			frameIndex = 0;
+			scheduledFuture = shellScheduler.scheduleAtFixedRate(this::renderNextFrame, 0, SPINNER_SCHEDULER_PERIOD,
+					TimeUnit.MILLISECONDS);
 		}
 	}
 
 	/**
-	 * Stops the spinner animation in the terminal, indicating that the background task
-	 * has completed or been cancelled. If the spinner is not running, this method has no
-	 * effect.
+	 * Stops the spinner animation in the terminal and clears the last frame, indicating
+	 * that the background task has completed or been cancelled. No frame is rendered once
+	 * this method returns. If the spinner is not running, this method has no effect.
 	 */
-	public void stopSpinner() {
-		if (isSpinnerRunning.compareAndSet(true, false)) {
-			scheduledFuture.cancel(true);
-			spinnerExecutorService.shutdown();
-			terminalPrinter.print("\r");
+	public synchronized void stopSpinner() {
+		if (scheduledFuture != null) {
+			scheduledFuture.cancel(false);
+			scheduledFuture = null;
+			streamRenderer.writeFrame("\r \r");
+		}
+	}
+
+	private synchronized void renderNextFrame() {
+		if (scheduledFuture != null) {
+			streamRenderer.writeFrame("\r" + SPINNER_FRAMES[frameIndex++ % SPINNER_FRAMES.length]);
 		}
 	}
 
+	private static boolean isInteractive(Terminal terminal) {
+		return System.console() != null && !Terminal.TYPE_DUMB.equals(terminal.getType())
+				&& !Terminal.TYPE_DUMB_COLOR.equals(terminal.getType());
+	}
+
 }
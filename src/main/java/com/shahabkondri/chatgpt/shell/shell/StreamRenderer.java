@@ -0,0 +1,111 @@
+package com.shahabkondri.chatgpt.shell.shell;
+
+import com.shahabkondri.chatgpt.shell.metrics.ChatMetrics;
+import org.jline.terminal.Terminal;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders streamed text to the terminal. Instead of flushing the terminal for every
+ * delta, deltas are buffered and flushed at most once per frame, or right away when they
+ * complete a line. Text is written as is, without being interpreted as a format string.
+ * The number of writes and flushes, and how long text waited in the buffer before it was
+ * flushed, are recorded by {@link ChatMetrics}.
+ *
+ * @author Shahab Kondri
+ */
+@Component
+public class StreamRenderer implements DisposableBean {
+
+	private static final long FRAME_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+	private final Terminal terminal;
+
+	private final ScheduledExecutorService shellScheduler;
+
+	private final ChatMetrics chatMetrics;
+
+	private ScheduledFuture<?> scheduledFrame;
+
+	private long lastFlushNanos = System.nanoTime();
+
+	private long firstPendingWriteNanos = -1;
+
+	/**
+	 * Constructs a new StreamRenderer instance with the specified terminal.
+	 * @param terminal The terminal the streamed text is rendered to.
+	 * @param shellScheduler The shared scheduler that runs deferred flushes.
+	 * @param chatMetrics The metrics that record the writes and flushes.
+	 */
+	public StreamRenderer(Terminal terminal, ScheduledExecutorService shellScheduler, ChatMetrics chatMetrics) {
+		this.terminal = terminal;
+		this.shellScheduler = shellScheduler;
+		this.chatMetrics = chatMetrics;
+	}
+
+	/**
+	 * Writes the given delta to the terminal buffer. The buffer is flushed right away if
+	 * the delta contains a new line or a frame has passed since the last flush; otherwise
+	 * the flush is deferred to the end of the current frame.
+	 * @param delta The streamed text to render.
+	 */
+	public synchronized void write(String delta) {
+		terminal.writer().write(delta);
+		chatMetrics.recordRenderWrite();
+		long now = System.nanoTime();
+		if (firstPendingWriteNanos < 0) {
+			firstPendingWriteNanos = now;
+		}
+
+		long elapsed = now - lastFlushNanos;
+		if (delta.indexOf('\n') >= 0 || elapsed >= FRAME_INTERVAL_NANOS) {
+			flush();
+		}
+		else if (scheduledFrame == null) {
+			scheduledFrame = shellScheduler.schedule(this::flush, FRAME_INTERVAL_NANOS - elapsed,
+					TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Writes a transient frame, such as a spinner frame, and flushes it right away.
+	 * Frames are not recorded in the metrics.
+	 * @param frame The frame to render.
+	 */
+	public synchronized void writeFrame(String frame) {
+		terminal.writer().write(frame);
+		terminal.flush();
+	}
+
+	/**
+	 * Flushes all buffered text to the terminal. This has no effect if nothing has been
+	 * written since the last flush.
+	 */
+	public synchronized void flush() {
+		if (scheduledFrame != null) {
+			scheduledFrame.cancel(false);
+			scheduledFrame = null;
+		}
+		if (firstPendingWriteNanos < 0) {
+			return;
+		}
+
+		terminal.flush();
+		lastFlushNanos = System.nanoTime();
+		chatMetrics.recordRenderFlush(lastFlushNanos - firstPendingWriteNanos);
+		firstPendingWriteNanos = -1;
+	}
+
+	/**
+	 * Flushes text that is still buffered when the application shuts down.
+	 */
+	@Override
+	public void destroy() {
+		flush();
+	}
+
+}
@@ -23,11 +23,12 @@ public class TerminalPrinter {
 	}
 
 	/**
-	 * Prints the specified message to the terminal.
+	 * Prints the specified message to the terminal. The message is printed as is, it is
+	 * not interpreted as a format string.
 	 * @param message The message to print to the terminal.
 	 */
 	public void print(String message) {
-		terminal.writer().printf(message);
+		terminal.writer().print(message);
 		terminal.flush();
 	}
 
@@ -36,7 +37,7 @@ public class TerminalPrinter {
 	 * @param message The message to print to the terminal.
 	 */
 	public void println(String message) {
-		terminal.writer().printf(message);
+		terminal.writer().print(message);
 		terminal.flush();
 		newLine();
 	}
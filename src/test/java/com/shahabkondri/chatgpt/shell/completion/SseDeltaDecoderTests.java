@@ -0,0 +1,153 @@
+package com.shahabkondri.chatgpt.shell.completion;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Tests for {@link SseDeltaDecoder}. Every stream is also decoded split in two at each of
+ * its bytes, as network buffers can end anywhere, even inside a multi-byte character.
+ *
+ * @author Shahab Kondri
+ */
+class SseDeltaDecoderTests {
+
+	@Test
+	void decodesContentDeltas() {
+		assertDecodes(event(chunk("\"Hello\"")) + event(chunk("\" world\"")), "Hello", " world");
+	}
+
+	@Test
+	void unescapesContent() {
+		assertDecodes(event(chunk("\"a\\\"b\\\\c\\/d\\ne\\tf\\rg\\bh\\fi\"")), "a\"b\\c/d\ne\tf\rg\bh\fi");
+	}
+
+	@Test
+	void unescapesUnicodeEscapes() {
+		assertDecodes(event(chunk("\"caf\\u00e9 \\u20AC\"")), "caf\u00e9 \u20ac");
+	}
+
+	@Test
+	void unescapesSurrogatePairs() {
+		assertDecodes(event(chunk("\"\\ud83d\\ude00!\"")), "\uD83D\uDE00!");
+	}
+
+	@Test
+	void replacesLoneSurrogates() {
+		assertDecodes(event(chunk("\"\\ud83d!\"")) + event(chunk("\"\\ude00\"")), "?!", "?");
+	}
+
+	@Test
+	void decodesRawMultiByteCharacters() {
+		String content = "h\u00e9llo \uD83D\uDE00 \u4e16\u754c";
+		assertDecodes(event(chunk("\"" + content + "\"")), content);
+	}
+
+	@Test
+	void decodesEmptyContent() {
+		assertDecodes(event(chunk("\"\"")), "");
+	}
+
+	@Test
+	void skipsChunksWithoutContent() {
+		String role = event("{\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\"},\"finish_reason\":null}]}");
+		String stop = event("{\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}");
+		assertDecodes(role + event(chunk("null")) + event(chunk(" null ")) + event(chunk("\"Hi\"")) + stop, "Hi");
+	}
+
+	@Test
+	void skipsCommentsAndOtherFields() {
+		assertDecodes(": keep-alive\n\nevent: message\nid: 1\n" + event(chunk("\"Hi\"")), "Hi");
+	}
+
+	@Test
+	void decodesCrLfLinesAndDataWithoutSpace() {
+		assertDecodes("data:" + chunk("\"Hi\"") + "\r\n\r\n" + "data: " + chunk("\"!\"") + "\r\n\r\n", "Hi", "!");
+	}
+
+	@Test
+	void decodesDone() {
+		SseDeltaDecoder decoder = new SseDeltaDecoder();
+		assertThat(decode(decoder, event(chunk("\"Hi\"")))).containsExactly("Hi");
+		assertThat(decoder.isDone()).isFalse();
+		assertThat(decode(decoder, "data: [DONE]\n\n")).isEmpty();
+		assertThat(decoder.isDone()).isTrue();
+	}
+
+	@Test
+	void keepsIncompleteLineUntilNextBuffer() {
+		SseDeltaDecoder decoder = new SseDeltaDecoder();
+		String event = event(chunk("\"Hi\""));
+		assertThat(decode(decoder, event.substring(0, event.length() - 2))).isEmpty();
+		assertThat(decode(decoder, event.substring(event.length() - 2))).containsExactly("Hi");
+	}
+
+	@Test
+	void decodesLongLines() {
+		String content = "x".repeat(10_000);
+		assertDecodes(event(chunk("\"" + content + "\"")), content);
+	}
+
+	@Test
+	void decodesDataBuffers() {
+		SseDeltaDecoder decoder = new SseDeltaDecoder();
+		byte[] bytes = (event(chunk("\"Hi\"")) + event(chunk("\"!\""))).getBytes(StandardCharsets.UTF_8);
+		DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.allocateBuffer(bytes.length + 4);
+		buffer.write(bytes);
+		buffer.readPosition(0);
+		assertThat(decoder.decode(buffer)).containsExactly("Hi", "!");
+	}
+
+	@Test
+	void rejectsUnterminatedContent() {
+		assertThatExceptionOfType(DecodingException.class)
+				.isThrownBy(() -> decode(new SseDeltaDecoder(), event("{\"delta\":{\"content\":\"Hi")));
+	}
+
+	@Test
+	void rejectsInvalidEscapes() {
+		assertThatExceptionOfType(DecodingException.class)
+				.isThrownBy(() -> decode(new SseDeltaDecoder(), event(chunk("\"\\x\""))));
+		assertThatExceptionOfType(DecodingException.class)
+				.isThrownBy(() -> decode(new SseDeltaDecoder(), event(chunk("\"\\u12g4\""))));
+	}
+
+	@Test
+	void rejectsContentThatIsNotAString() {
+		assertThatExceptionOfType(DecodingException.class)
+				.isThrownBy(() -> decode(new SseDeltaDecoder(), event(chunk("42"))));
+	}
+
+	private static void assertDecodes(String stream, String... deltas) {
+		byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+		for (int split = 0; split <= bytes.length; split++) {
+			SseDeltaDecoder decoder = new SseDeltaDecoder();
+			List<String> decoded = new ArrayList<>(decoder.decode(bytes, 0, split));
+			decoded.addAll(decoder.decode(bytes, split, bytes.length - split));
+			assertThat(decoded).as("split at %d", split).containsExactly(deltas);
+		}
+	}
+
+	private static List<String> decode(SseDeltaDecoder decoder, String stream) {
+		byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+		return decoder.decode(bytes, 0, bytes.length);
+	}
+
+	private static String chunk(String content) {
+		return "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"choices\":[{\"index\":0,"
+				+ "\"delta\":{\"content\":" + content + "},\"finish_reason\":null}]}";
+	}
+
+	private static String event(String data) {
+		return "data: " + data + "\n\n";
+	}
+
+}